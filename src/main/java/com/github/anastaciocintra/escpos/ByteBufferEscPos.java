@@ -0,0 +1,191 @@
+/*
+ * Use of this source code is governed by the MIT license that can be
+ * found in the LICENSE file.
+ */
+package com.github.anastaciocintra.escpos;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
+
+/**
+ * EscPos that writes the commands directly into one <code>java.nio.ByteBuffer</code>.
+ * <p>
+ * The buffer can be a heap or a direct buffer, supplied by the caller (from a pool, for example).
+ * Commands and texts are encoded in place, so the buffer can be sent
+ * to one <code>SocketChannel</code> or <code>FileChannel</code> without any extra copy.
+ * <p>
+ * When the buffer is full:
+ * <ul>
+ * <li>without channel, it grows to one new buffer of the same kind (heap or direct),
+ * with double capacity. Use {@link #getByteBuffer()} to get the actual buffer.</li>
+ * <li>with channel, its content from the initial position is spilled to the channel and the buffer
+ * is reused from that position, so the bytes before it are kept.</li>
+ * </ul>
+ * Channels must be in blocking mode.
+ */
+public class ByteBufferEscPos extends EscPos {
+
+    protected ByteBuffer byteBuffer;
+    protected final WritableByteChannel channel;
+    /**
+     * initial position of the buffer, where the commands start.
+     */
+    protected final int start;
+
+    /**
+     * creates an instance that grows the buffer when it is full.
+     *
+     * @param byteBuffer destination of the commands, from its position.
+     * @see #getByteBuffer()
+     */
+    public ByteBufferEscPos(ByteBuffer byteBuffer) {
+        this(byteBuffer, null);
+    }
+
+    /**
+     * creates an instance that spills the buffer to the channel when it is full.
+     * <p>
+     * Remaining bytes are written to the channel on <code>flush()</code> and <code>close()</code>,
+     * <code>close()</code> closes the channel too.
+     *
+     * @param byteBuffer destination of the commands, from its position.
+     * @param channel destination of the buffer when it is full, or null to grow the buffer.
+     * @exception IllegalArgumentException if the buffer has no room, or no room after its position with channel.
+     */
+    public ByteBufferEscPos(ByteBuffer byteBuffer, WritableByteChannel channel) {
+        super(null);
+        if (byteBuffer.capacity() < 1) {
+            throw new IllegalArgumentException("byteBuffer capacity must be greater than 0");
+        }
+        if (channel != null && byteBuffer.position() == byteBuffer.capacity()) {
+            throw new IllegalArgumentException("byteBuffer must have room after its position");
+        }
+        this.byteBuffer = byteBuffer;
+        this.start = byteBuffer.position();
+        this.channel = channel;
+        this.outputStream = new OutputStream() {
+            @Override
+            public void write(int b) throws IOException {
+                send(b);
+            }
+
+            @Override
+            public void write(byte[] b, int off, int len) throws IOException {
+                send(b, off, len);
+            }
+
+            @Override
+            public void close() throws IOException {
+                if (channel != null) {
+                    channel.close();
+                }
+            }
+        };
+    }
+
+    /**
+     * Get the buffer with the commands.
+     * <p>
+     * The buffer is in write mode, call <code>flip()</code> before sending it.
+     * Without channel, it can be one new buffer when the original one was full.
+     *
+     * @return actual buffer.
+     */
+    public ByteBuffer getByteBuffer() {
+        return byteBuffer;
+    }
+
+    /**
+     * Make room for one amount of bytes, spilling or growing the buffer.
+     *
+     * @param len number of bytes.
+     * @exception IOException if an I/O error occurs.
+     */
+    protected void ensureRemaining(int len) throws IOException {
+        if (byteBuffer.remaining() >= len) {
+            return;
+        }
+        if (channel != null) {
+            flushBuffer();
+            return;
+        }
+        int capacity = Math.max(byteBuffer.capacity() * 2, byteBuffer.position() + len);
+        ByteBuffer grown = byteBuffer.isDirect() ? ByteBuffer.allocateDirect(capacity) : ByteBuffer.allocate(capacity);
+        byteBuffer.flip();
+        grown.put(byteBuffer);
+        byteBuffer = grown;
+    }
+
+    @Override
+    protected void send(int b) throws IOException {
+        ensureRemaining(1);
+        byteBuffer.put((byte) b);
+    }
+
+    @Override
+    protected void send(byte[] b, int off, int len) throws IOException {
+        if (channel != null && len > byteBuffer.capacity() - start) {
+            // bigger than the buffer, don't copy it
+            flushBuffer();
+            writeFully(ByteBuffer.wrap(b, off, len));
+            return;
+        }
+        ensureRemaining(len);
+        byteBuffer.put(b, off, len);
+    }
+
+    @Override
+    protected void sendText(CharSequence text, int start, int end, CodePageEncoder encoder) throws IOException {
+        while (start < end) {
+            int chunkEnd = end;
+            if (channel != null) {
+                // chunks of text that fit on the buffer
+                int chars = Math.max(1, byteBuffer.remaining() / encoder.maxBytes(1));
+                chunkEnd = Math.min(end, start + chars);
+                if (chunkEnd < end && Character.isHighSurrogate(text.charAt(chunkEnd - 1))) {
+                    chunkEnd--;
+                }
+                if (chunkEnd == start || encoder.maxBytes(chunkEnd - start) > byteBuffer.remaining()) {
+                    if (byteBuffer.position() == this.start) {
+                        // buffer too small to this charset
+                        super.sendText(text, start, end, encoder);
+                        return;
+                    }
+                    flushBuffer();
+                    continue;
+                }
+            }
+            ensureRemaining(encoder.maxBytes(chunkEnd - start));
+            encoder.encode(text, start, chunkEnd, byteBuffer);
+            start = chunkEnd;
+        }
+    }
+
+    /**
+     * Spill the buffer content from the initial position to the channel.
+     * <p>
+     * Without channel, the content is kept on the buffer.
+     *
+     * @exception IOException if an I/O error occurs.
+     */
+    @Override
+    protected void flushBuffer() throws IOException {
+        if (channel == null || byteBuffer.position() == start) {
+            return;
+        }
+        byteBuffer.limit(byteBuffer.position());
+        byteBuffer.position(start);
+        writeFully(byteBuffer);
+        byteBuffer.limit(byteBuffer.capacity());
+        byteBuffer.position(start);
+    }
+
+    private void writeFully(ByteBuffer src) throws IOException {
+        while (src.hasRemaining()) {
+            channel.write(src);
+        }
+    }
+
+}
@@ -0,0 +1,299 @@
+/*
+ * Use of this source code is governed by the MIT license that can be
+ * found in the LICENSE file.
+ */
+package com.github.anastaciocintra.escpos;
+
+import java.io.UnsupportedEncodingException;
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.IllegalCharsetNameException;
+import java.nio.charset.UnsupportedCharsetException;
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Encode texts to the bytes of one character code table.
+ * <p>
+ * The result is the same of <code>String.getBytes(charsetName)</code>, but the
+ * encoder is created only once for each charset and the text is encoded directly
+ * into the caller's array.
+ * <p>
+ * Single byte charsets, like cp437, cp850 or cp858, are encoded by one
+ * primitive char to byte lookup table, without using the JDK charset machinery.
+ * Other charsets use one cached <code>CharsetEncoder</code>.
+ * <p>
+ * Instances are safe to be shared between threads.
+ *
+ * @see EscPos#setCharsetName(String)
+ * @see EscPos.CharacterCodeTable
+ */
+public final class CodePageEncoder {
+
+    private static final ConcurrentHashMap<String, CodePageEncoder> encoders = new ConcurrentHashMap<>();
+
+    private final String charsetName;
+
+    // single byte charsets
+    private final byte[][] pages;
+    private final long[] coverage;
+    private final byte replacement;
+    private final boolean asciiCompatible;
+
+    // multi byte charsets
+    private final CharsetEncoder charsetEncoder;
+    private final int maxBytesPerChar;
+
+    /**
+     * Get the encoder of one charset.
+     * <p>
+     * The encoder is created on the first call and reused after that.
+     *
+     * @param charsetName name of the charset, the same used on String.getBytes.
+     * @return encoder of the charset.
+     * @exception UnsupportedEncodingException If the named charset is not
+     * supported
+     * @see java.lang.String#getBytes(java.lang.String)
+     */
+    public static CodePageEncoder forCharsetName(String charsetName) throws UnsupportedEncodingException {
+        CodePageEncoder encoder = encoders.get(charsetName);
+        if (encoder != null) {
+            return encoder;
+        }
+        Charset charset;
+        try {
+            charset = Charset.forName(charsetName);
+        } catch (IllegalCharsetNameException | UnsupportedCharsetException ex) {
+            throw new UnsupportedEncodingException(charsetName);
+        }
+        if (!charset.canEncode()) {
+            throw new UnsupportedEncodingException(charsetName);
+        }
+        encoder = new CodePageEncoder(charsetName, charset);
+        CodePageEncoder previous = encoders.putIfAbsent(charsetName, encoder);
+        return previous != null ? previous : encoder;
+    }
+
+    private CodePageEncoder(String charsetName, Charset charset) {
+        this.charsetName = charsetName;
+        CharsetEncoder encoder = charset.newEncoder()
+                .onMalformedInput(CodingErrorAction.REPLACE)
+                .onUnmappableCharacter(CodingErrorAction.REPLACE);
+        if (encoder.maxBytesPerChar() != 1.0f || encoder.replacement().length != 1) {
+            this.pages = null;
+            this.coverage = null;
+            this.replacement = 0;
+            this.asciiCompatible = false;
+            this.charsetEncoder = encoder;
+            this.maxBytesPerChar = (int) Math.ceil(encoder.maxBytesPerChar());
+            return;
+        }
+        this.charsetEncoder = null;
+        this.maxBytesPerChar = 1;
+        this.replacement = encoder.replacement()[0];
+
+        // encode all chars (except surrogates) at once, each one gives exactly one byte.
+        char[] chars = new char[0x10000 - (Character.MAX_SURROGATE - Character.MIN_SURROGATE + 1)];
+        int n = 0;
+        for (int c = 0; c <= 0xFFFF; c++) {
+            if (!Character.isSurrogate((char) c)) {
+                chars[n++] = (char) c;
+            }
+        }
+        ByteBuffer encoded = ByteBuffer.allocate(chars.length);
+        encoder.encode(CharBuffer.wrap(chars), encoded, true);
+        encoder.flush(encoded);
+        encoder.reset();
+        if (encoded.position() != chars.length) {
+            throw new IllegalStateException("unexpected length encoding " + charsetName);
+        }
+
+        byte[] unmappedPage = new byte[256];
+        Arrays.fill(unmappedPage, replacement);
+        this.pages = new byte[256][];
+        Arrays.fill(pages, unmappedPage);
+        this.coverage = new long[0x10000 / 64];
+        for (int i = 0; i < chars.length; i++) {
+            char c = chars[i];
+            byte b = encoded.get(i);
+            // replacement byte is ambiguous, it can be a real mapping like '?'
+            if (b == replacement && !encoder.canEncode(c)) {
+                continue;
+            }
+            coverage[c >>> 6] |= 1L << c;
+            byte[] page = pages[c >>> 8];
+            if (page == unmappedPage) {
+                page = unmappedPage.clone();
+                pages[c >>> 8] = page;
+            }
+            page[c & 0xFF] = b;
+        }
+
+        boolean ascii = true;
+        for (int c = 0; c < 0x80 && ascii; c++) {
+            ascii = pages[0][c] == (byte) c;
+        }
+        this.asciiCompatible = ascii;
+    }
+
+    /**
+     * Get the charsetName of this encoder.
+     *
+     * @return name used on {@link #forCharsetName(String)}
+     */
+    public String getCharsetName() {
+        return charsetName;
+    }
+
+    /**
+     * Tells whether the charset use only one byte for each char.
+     *
+     * @return true when encoded by a lookup table.
+     */
+    public boolean isSingleByte() {
+        return pages != null;
+    }
+
+    /**
+     * Tells whether the char can be encoded by this charset.
+     *
+     * @param c the char.
+     * @return false when the char is encoded as the replacement byte.
+     */
+    public boolean canEncode(char c) {
+        if (pages != null) {
+            return (coverage[c >>> 6] & (1L << c)) != 0;
+        }
+        synchronized (charsetEncoder) {
+            charsetEncoder.reset();
+            return charsetEncoder.canEncode(c);
+        }
+    }
+
+    /**
+     * Get the max number of bytes needed to encode the chars.
+     *
+     * @param numberOfChars number of chars to be encoded.
+     * @return the size of destination needed by {@link #encode(CharSequence, int, int, byte[], int)}
+     */
+    public int maxBytes(int numberOfChars) {
+        if (pages != null) {
+            return numberOfChars;
+        }
+        // room for shift sequences of stateful charsets
+        return numberOfChars * maxBytesPerChar + 8;
+    }
+
+    /**
+     * Encode a range of chars into the destination array.
+     * <p>
+     * Chars that cannot be encoded are replaced the same way of
+     * <code>String.getBytes</code>. The range should not split one surrogate pair.
+     *
+     * @param text the text to be encoded.
+     * @param start index of the first char.
+     * @param end index after the last char.
+     * @param dst destination array, needs at least {@link #maxBytes(int)} bytes of room.
+     * @param dstOffset position of the first byte on dst.
+     * @return number of bytes written on dst.
+     * @exception IndexOutOfBoundsException if dst don't have room for the bytes.
+     */
+    public int encode(CharSequence text, int start, int end, byte[] dst, int dstOffset) {
+        if (pages == null) {
+            return encodeByCharsetEncoder(text, start, end, dst, dstOffset);
+        }
+        int d = dstOffset;
+        int i = start;
+        if (asciiCompatible) {
+            // fast path for ASCII
+            while (i < end) {
+                char c = text.charAt(i);
+                if (c >= 0x80) {
+                    break;
+                }
+                dst[d++] = (byte) c;
+                i++;
+            }
+        }
+        for (; i < end; i++) {
+            char c = text.charAt(i);
+            if (Character.isSurrogate(c)) {
+                // one replacement byte for each surrogate pair
+                if (Character.isHighSurrogate(c) && i + 1 < end && Character.isLowSurrogate(text.charAt(i + 1))) {
+                    i++;
+                }
+                dst[d++] = replacement;
+                continue;
+            }
+            dst[d++] = pages[c >>> 8][c & 0xFF];
+        }
+        return d - dstOffset;
+    }
+
+    /**
+     * Encode a range of chars into the destination buffer, from its position.
+     * <p>
+     * Heap buffers are encoded directly into their arrays, and direct buffers
+     * receive each byte in place, without intermediate arrays.
+     *
+     * @param text the text to be encoded.
+     * @param start index of the first char.
+     * @param end index after the last char.
+     * @param dst destination buffer, needs at least {@link #maxBytes(int)} bytes remaining.
+     * @return number of bytes written on dst.
+     * @exception java.nio.BufferOverflowException if dst don't have room for the bytes.
+     * @see #encode(CharSequence, int, int, byte[], int)
+     */
+    public int encode(CharSequence text, int start, int end, ByteBuffer dst) {
+        if (dst.hasArray()) {
+            if (dst.remaining() < maxBytes(end - start)) {
+                throw new BufferOverflowException();
+            }
+            int len = encode(text, start, end, dst.array(), dst.arrayOffset() + dst.position());
+            dst.position(dst.position() + len);
+            return len;
+        }
+        if (pages == null) {
+            return encodeByCharsetEncoder(text, start, end, dst);
+        }
+        int position = dst.position();
+        for (int i = start; i < end; i++) {
+            char c = text.charAt(i);
+            if (Character.isSurrogate(c)) {
+                if (Character.isHighSurrogate(c) && i + 1 < end && Character.isLowSurrogate(text.charAt(i + 1))) {
+                    i++;
+                }
+                dst.put(replacement);
+                continue;
+            }
+            dst.put(pages[c >>> 8][c & 0xFF]);
+        }
+        return dst.position() - position;
+    }
+
+    private int encodeByCharsetEncoder(CharSequence text, int start, int end, byte[] dst, int dstOffset) {
+        ByteBuffer out = ByteBuffer.wrap(dst, dstOffset, dst.length - dstOffset);
+        try {
+            return encodeByCharsetEncoder(text, start, end, out);
+        } catch (BufferOverflowException ex) {
+            throw new IndexOutOfBoundsException("dst has no room for the encoded text");
+        }
+    }
+
+    private int encodeByCharsetEncoder(CharSequence text, int start, int end, ByteBuffer out) {
+        int position = out.position();
+        synchronized (charsetEncoder) {
+            charsetEncoder.reset();
+            if (charsetEncoder.encode(CharBuffer.wrap(text, start, end), out, true).isOverflow()
+                    || charsetEncoder.flush(out).isOverflow()) {
+                throw new BufferOverflowException();
+            }
+        }
+        return out.position() - position;
+    }
+
+}
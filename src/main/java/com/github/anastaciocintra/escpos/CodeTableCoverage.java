@@ -0,0 +1,84 @@
+/*
+ * Use of this source code is governed by the MIT license that can be
+ * found in the LICENSE file.
+ */
+package com.github.anastaciocintra.escpos;
+
+import java.io.UnsupportedEncodingException;
+
+/**
+ * Precomputed coverage index of the character code tables.
+ * <p>
+ * For each char, keep one bitset (long) of the tables able to encode it, where each
+ * bit is the ordinal of one {@link EscPos.CharacterCodeTable} with charset mapping.
+ * The index is built once, on the first use.
+ *
+ * @see EscPos#setAutoCharacterCodeTable(EscPos.CharacterCodeTable...)
+ */
+final class CodeTableCoverage {
+
+    private CodeTableCoverage() {
+    }
+
+    private static class Holder {
+        private static final long[][] masks = build();
+    }
+
+    private static long[][] build() {
+        EscPos.CharacterCodeTable[] tables = EscPos.CharacterCodeTable.values();
+        if (tables.length > Long.SIZE) {
+            throw new IllegalStateException("too many character code tables to be indexed");
+        }
+        long[] emptyPage = new long[256];
+        long[][] masks = new long[256][];
+        for (int i = 0; i < masks.length; i++) {
+            masks[i] = emptyPage;
+        }
+        for (EscPos.CharacterCodeTable table : tables) {
+            if (!table.hasCharsetMapping()) {
+                continue;
+            }
+            CodePageEncoder encoder;
+            try {
+                encoder = CodePageEncoder.forCharsetName(table.charsetName);
+            } catch (UnsupportedEncodingException ex) {
+                // charset not available on this JRE
+                continue;
+            }
+            long bit = mask(table);
+            for (int c = 0; c <= 0xFFFF; c++) {
+                if (!encoder.canEncode((char) c)) {
+                    continue;
+                }
+                long[] page = masks[c >>> 8];
+                if (page == emptyPage) {
+                    page = new long[256];
+                    masks[c >>> 8] = page;
+                }
+                page[c & 0xFF] |= bit;
+            }
+        }
+        return masks;
+    }
+
+    /**
+     * Get the tables able to encode the char.
+     *
+     * @param c the char.
+     * @return bitset of table ordinals, zero when no table can encode it.
+     */
+    static long mask(char c) {
+        return Holder.masks[c >>> 8][c & 0xFF];
+    }
+
+    /**
+     * Get the bit of the table.
+     *
+     * @param table the character code table.
+     * @return bitset with only the ordinal of table.
+     */
+    static long mask(EscPos.CharacterCodeTable table) {
+        return 1L << table.ordinal();
+    }
+
+}
@@ -4,17 +4,20 @@
  */
 package com.github.anastaciocintra.escpos;
 
+import com.github.anastaciocintra.escpos.image.BandedEscPosImage;
 import com.github.anastaciocintra.escpos.image.EscPosImage;
 import java.io.Closeable;
 import java.io.Flushable;
 import java.io.IOException;
 import java.io.OutputStream;
 import java.io.UnsupportedEncodingException;
+import java.util.Map;
 import java.util.Objects;
 import java.util.Properties;
 
 import com.github.anastaciocintra.escpos.barcode.BarCodeWrapperInterface;
 import com.github.anastaciocintra.escpos.image.ImageWrapperInterface;
+import com.github.anastaciocintra.escpos.image.RasterWrapperInterface;
 
 /**
  * Write some usual ESC/POS commands to the OutPutStream.<p>
@@ -77,15 +80,27 @@ public class EscPos implements Closeable, Flushable, EscPosConst {
         User_defined_page(255);
         public int value;
         public String charsetName;
+        private final boolean charsetMapping;
 
         private CharacterCodeTable(int value) {
             this.value = value;
             this.charsetName = "cp437";
+            this.charsetMapping = false;
         }
 
         private CharacterCodeTable(int value, String charsetName) {
             this.value = value;
             this.charsetName = charsetName;
+            this.charsetMapping = true;
+        }
+
+        /**
+         * Tells whether the table have its own java charset.
+         *
+         * @return false when the table is encoded with the default "cp437".
+         */
+        public boolean hasCharsetMapping() {
+            return charsetMapping;
         }
     }
 
@@ -121,8 +136,34 @@ public class EscPos implements Closeable, Flushable, EscPosConst {
 
     protected OutputStream outputStream;
     protected String charsetName;
+    protected CodePageEncoder encoder;
+    protected byte[] textBuffer = new byte[0];
     protected Style style;
 
+    protected byte[] buffer;
+    protected int bufferCount;
+
+    /**
+     * view of the send methods, used to stream images and bar-codes.
+     */
+    protected final OutputStream sendStream = new OutputStream() {
+        @Override
+        public void write(int b) throws IOException {
+            send(b);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            send(b, off, len);
+        }
+    };
+
+    protected boolean stateTracking;
+    protected Style printerStyle;
+    protected PrintModeStyle printerPrintModeStyle;
+    protected CharacterCodeTable printerCodeTable;
+    protected long autoCodeTables;
+
     /**
      * creates an instance based on outputStream.
      *
@@ -135,6 +176,26 @@ public class EscPos implements Closeable, Flushable, EscPosConst {
         style = new Style();
     }
 
+    /**
+     * creates an instance based on outputStream with one internal write buffer.
+     * <p>
+     * All commands are batched on the buffer and are sent to the outputStream only
+     * when the buffer is full, on <code>flush()</code> or on <code>close()</code>.
+     * This way, one receipt reaches the outputStream in one or a few large writes.
+     *
+     * @param outputStream can be one file, System.out or printer...
+     * @param bufferSize size of the internal buffer in bytes.
+     * @exception IllegalArgumentException if bufferSize is less than 1
+     * @see #flush()
+     */
+    public EscPos(OutputStream outputStream, int bufferSize) throws IllegalArgumentException {
+        this(outputStream);
+        if (bufferSize < 1) {
+            throw new IllegalArgumentException("bufferSize must be greater than 0");
+        }
+        this.buffer = new byte[bufferSize];
+    }
+
     /**
      * Writes one byte directly to outputStream. Can be used to send customized
      * commands to printer.
@@ -147,7 +208,8 @@ public class EscPos implements Closeable, Flushable, EscPosConst {
      * @see java.io.OutputStream#write(int)
      */
     public EscPos write(int b) throws IOException {
-        this.outputStream.write(b);
+        resetPrinterState();
+        send(b);
         return this;
     }
 
@@ -164,34 +226,104 @@ public class EscPos implements Closeable, Flushable, EscPosConst {
      * @see java.io.OutputStream#write(byte[], int, int)
      */
     public EscPos write(byte b[], int off, int len) throws IOException {
-        this.outputStream.write(b, off, len);
+        resetPrinterState();
+        send(b, off, len);
         return this;
     }
 
     /**
-     * call outputStrem.flush().
+     * Send one byte of ESC/POS command to outputStream.
+     * <p>
+     * Unlike <code>write</code>, don't reset the printer state known by this object.
+     *
+     * @param b the <code>byte</code>.
+     * @exception IOException if an I/O error occurs.
+     */
+    protected void send(int b) throws IOException {
+        if (buffer == null) {
+            this.outputStream.write(b);
+            return;
+        }
+        if (bufferCount == buffer.length) {
+            flushBuffer();
+        }
+        buffer[bufferCount++] = (byte) b;
+    }
+
+    /**
+     * Send bytes of ESC/POS commands to outputStream.
+     * <p>
+     * Unlike <code>write</code>, don't reset the printer state known by this object.
+     *
+     * @param b the data.
+     * @param off the start offset in the data.
+     * @param len the number of bytes to write.
+     * @exception IOException if an I/O error occurs.
+     */
+    protected void send(byte b[], int off, int len) throws IOException {
+        if (buffer == null) {
+            this.outputStream.write(b, off, len);
+            return;
+        }
+        if (len >= buffer.length) {
+            // bigger than the buffer, don't copy it
+            flushBuffer();
+            this.outputStream.write(b, off, len);
+            return;
+        }
+        if (len > buffer.length - bufferCount) {
+            flushBuffer();
+        }
+        System.arraycopy(b, off, buffer, bufferCount, len);
+        bufferCount += len;
+    }
+
+    /**
+     * Send the bytes of the internal buffer to outputStream.
+     *
+     * @exception IOException if an I/O error occurs.
+     * @see #EscPos(OutputStream, int)
+     */
+    protected void flushBuffer() throws IOException {
+        if (bufferCount > 0) {
+            int count = bufferCount;
+            bufferCount = 0;
+            this.outputStream.write(buffer, 0, count);
+        }
+    }
+
+    /**
+     * send the internal buffer and call outputStrem.flush().
      *
      * @exception IOException if an I/O error occurs.
      * @see java.io.OutputStream#flush()
      */
     @Override
     public void flush() throws IOException {
+        flushBuffer();
         outputStream.flush();
     }
 
     /**
-     * call close of outputStream.
+     * send the internal buffer and call close of outputStream.
      *
      * @exception IOException if an I/O error occurs.
      * @see java.io.OutputStream#close()
      */
     @Override
     public void close() throws IOException {
-        this.outputStream.close();
+        try {
+            flushBuffer();
+        } finally {
+            this.outputStream.close();
+        }
     }
 
     /**
      * Each write will be send to output Stream.
+     * <p>
+     * Bytes still on the internal buffer will be sent to the new output stream,
+     * call <code>flush()</code> before if they belong to the previous one.
      *
      * @param outputStream value to be used on writes
      * @return this object.
@@ -203,6 +335,9 @@ public class EscPos implements Closeable, Flushable, EscPosConst {
 
     /**
      * get output stream of this object.
+     * <p>
+     * When this object is buffered, call <code>flush()</code> before writing
+     * directly on the output stream.
      *
      * @return actual value of output stream.
      */
@@ -232,6 +367,120 @@ public class EscPos implements Closeable, Flushable, EscPosConst {
         return style;
     }
 
+    /**
+     * Turn printer state tracking on/off.
+     * <p>
+     * When on, this object remembers the style already sent to the printer
+     * and each write sends only the style commands whose values changed.
+     * The remembered state is discarded on <code>initializePrinter</code>
+     * and whenever raw bytes are written.
+     * <p>
+     * Default value is off.
+     *
+     * @param stateTracking true to send only the changed style commands.
+     * @return this object.
+     * @see #resetPrinterState()
+     */
+    public EscPos setStateTracking(boolean stateTracking) {
+        this.stateTracking = stateTracking;
+        resetPrinterState();
+        return this;
+    }
+
+    /**
+     * Get state tracking mode of this object.
+     *
+     * @return true if only changed style commands are sent.
+     * @see #setStateTracking(boolean)
+     */
+    public boolean isStateTracking() {
+        return stateTracking;
+    }
+
+    /**
+     * Forget the style already sent to the printer.
+     * <p>
+     * The next write sends all style commands again. Call it when you send
+     * commands to the printer without using this object.
+     *
+     * @return this object.
+     * @see #setStateTracking(boolean)
+     */
+    public EscPos resetPrinterState() {
+        printerStyle = null;
+        printerPrintModeStyle = null;
+        printerCodeTable = null;
+        return this;
+    }
+
+    /**
+     * Send the commands to configure the style.
+     * <p>
+     * When state tracking is on, only the commands that differ from the printer state are sent.
+     *
+     * @param style to be configured on the printer.
+     * @exception IOException if an I/O error occurs.
+     * @see #setStateTracking(boolean)
+     */
+    protected void sendStyle(Style style) throws IOException {
+        if (!stateTracking || style.isConfigBytesOverridden()) {
+            byte[] configBytes = style.getConfigBytesToSend();
+            send(configBytes, 0, configBytes.length);
+            // the commands of one subclass are not tracked
+            printerStyle = null;
+            printerPrintModeStyle = null;
+            return;
+        }
+        if (printerStyle != style) {
+            byte[] configBytes = style.getConfigBytes(printerStyle);
+            if (configBytes.length > 0) {
+                send(configBytes, 0, configBytes.length);
+            }
+            // frozen styles are remembered without any copy
+            if (style.isFrozen()) {
+                printerStyle = style;
+            } else if (configBytes.length > 0) {
+                printerStyle = new Style(style);
+            }
+        }
+        // ESC ! is not tracked together with Style commands
+        printerPrintModeStyle = null;
+    }
+
+    /**
+     * Send the commands to configure the print mode style.
+     * <p>
+     * When state tracking is on, only the commands that differ from the printer state are sent.
+     *
+     * @param printModeStyle to be configured on the printer.
+     * @exception IOException if an I/O error occurs.
+     * @see #setStateTracking(boolean)
+     */
+    protected void sendStyle(PrintModeStyle printModeStyle) throws IOException {
+        if (!stateTracking || printModeStyle.isConfigBytesOverridden()) {
+            byte[] configBytes = printModeStyle.getConfigBytesToSend();
+            send(configBytes, 0, configBytes.length);
+            // the commands of one subclass are not tracked
+            printerStyle = null;
+            printerPrintModeStyle = null;
+            return;
+        }
+        if (printerPrintModeStyle != printModeStyle) {
+            byte[] configBytes = printModeStyle.getConfigBytes(printerPrintModeStyle);
+            if (configBytes.length > 0) {
+                send(configBytes, 0, configBytes.length);
+            }
+            // frozen styles are remembered without any copy
+            if (printModeStyle.isFrozen()) {
+                printerPrintModeStyle = printModeStyle;
+            } else if (configBytes.length > 0) {
+                printerPrintModeStyle = new PrintModeStyle(printModeStyle);
+            }
+        }
+        // ESC ! changes font, emphasized, size and underline of Style commands
+        printerStyle = null;
+    }
+
     /**
      * Set charsetName used on encodes of Strings.
      *
@@ -243,6 +492,7 @@ public class EscPos implements Closeable, Flushable, EscPosConst {
      */
     public final EscPos setCharsetName(String charsetName) {
         this.charsetName = charsetName;
+        this.encoder = null;
         return this;
     }
 
@@ -274,10 +524,40 @@ public class EscPos implements Closeable, Flushable, EscPosConst {
     public EscPos setCharacterCodeTable(CharacterCodeTable table) throws IOException, IllegalArgumentException {
         setCharsetName(table.charsetName);
         setPrinterCharacterTable(table.value);
+        printerCodeTable = table;
         return this;
 
     }
 
+    /**
+     * Turn automatic selection of character code table on/off.
+     * <p>
+     * When on, each text is checked against one precomputed coverage index,
+     * and each segment of the text is written with one of the <code>tables</code>
+     * able to encode it. The command to select the table (ESC t) is sent
+     * only when the table actually changes. This way, you can mix, for example,
+     * Portuguese, Greek and Cyrillic words on the same line.
+     * <p>
+     * Use only tables supported by your printer. Call it without tables to turn it off.
+     *
+     * @param tables character code tables that can be selected.
+     * @return this object.
+     * @exception IllegalArgumentException if one table don't have charset mapping.
+     * @see CharacterCodeTable#hasCharsetMapping()
+     * @see #setCharacterCodeTable(CharacterCodeTable)
+     */
+    public EscPos setAutoCharacterCodeTable(CharacterCodeTable... tables) throws IllegalArgumentException {
+        long mask = 0;
+        for (CharacterCodeTable table : tables) {
+            if (!table.hasCharsetMapping()) {
+                throw new IllegalArgumentException(table.name() + " don't have charset mapping");
+            }
+            mask |= CodeTableCoverage.mask(table);
+        }
+        this.autoCodeTables = mask;
+        return this;
+    }
+
     /**
      * Select character code table on the printer.<p>
      * Is recommended that you use <code>setCharacterCodeTable</code>, but if
@@ -298,12 +578,122 @@ public class EscPos implements Closeable, Flushable, EscPosConst {
             throw new IllegalArgumentException("characterCodeTable must be between 0 and 255");
         }
 
-        write(ESC);
-        write('t');
-        write(characterCodeTable);
+        send(ESC);
+        send('t');
+        send(characterCodeTable);
+        printerCodeTable = null;
         return this;
     }
 
+    /**
+     * Encode the text by charsetName and send it.
+     * <p>
+     * The text is encoded by one cached encoder directly into the internal buffer
+     * when it is available, without any intermediate array.
+     *
+     * @param text content to be encoded.
+     * @exception UnsupportedEncodingException If the named charset is not
+     * supported
+     * @exception IOException if an I/O error occurs.
+     * @see CodePageEncoder
+     */
+    protected void sendText(CharSequence text) throws UnsupportedEncodingException, IOException {
+        if (autoCodeTables != 0) {
+            sendTextAutoCodeTable(text);
+            return;
+        }
+        if (encoder == null) {
+            encoder = CodePageEncoder.forCharsetName(charsetName);
+        }
+        sendText(text, 0, text.length(), encoder);
+    }
+
+    /**
+     * Split the text in segments that can be encoded by one table and send them,
+     * selecting the table of each segment when needed.
+     *
+     * @param text content to be encoded.
+     * @exception IOException if an I/O error occurs.
+     * @see #setAutoCharacterCodeTable(CharacterCodeTable...)
+     */
+    protected void sendTextAutoCodeTable(CharSequence text) throws IOException {
+        int length = text.length();
+        int start = 0;
+        long segmentMask = autoCodeTables;
+        boolean segmentAscii = true;
+        for (int i = 0; i < length; i++) {
+            char c = text.charAt(i);
+            long charMask = CodeTableCoverage.mask(c) & autoCodeTables;
+            if (charMask == 0) {
+                // no table can encode it, don't break the segment
+                continue;
+            }
+            if ((segmentMask & charMask) == 0) {
+                sendTextSegment(text, start, i, segmentMask, segmentAscii);
+                start = i;
+                segmentMask = autoCodeTables;
+                segmentAscii = true;
+            }
+            segmentMask &= charMask;
+            segmentAscii &= c < 0x80;
+        }
+        sendTextSegment(text, start, length, segmentMask, segmentAscii);
+    }
+
+    private void sendTextSegment(CharSequence text, int start, int end, long segmentMask, boolean segmentAscii)
+            throws IOException {
+        if (start == end) {
+            return;
+        }
+        boolean keepTable = printerCodeTable != null
+                ? (segmentMask & CodeTableCoverage.mask(printerCodeTable)) != 0
+                // unknown table on printer, ASCII is kept as without automatic selection
+                : segmentAscii;
+        if (!keepTable) {
+            CharacterCodeTable table = CharacterCodeTable.values()[Long.numberOfTrailingZeros(segmentMask)];
+            setCharacterCodeTable(table);
+        }
+        if (encoder == null) {
+            encoder = CodePageEncoder.forCharsetName(charsetName);
+        }
+        sendText(text, start, end, encoder);
+    }
+
+    /**
+     * Encode a range of the text and send it.
+     *
+     * @param text content to be encoded.
+     * @param start index of the first char.
+     * @param end index after the last char.
+     * @param encoder used to encode the text.
+     * @exception IOException if an I/O error occurs.
+     */
+    protected void sendText(CharSequence text, int start, int end, CodePageEncoder encoder) throws IOException {
+        if (buffer != null && encoder.isSingleByte()) {
+            while (start < end) {
+                int free = buffer.length - bufferCount;
+                int chunkEnd = Math.min(end, start + free);
+                // never split one surrogate pair
+                if (chunkEnd < end && Character.isHighSurrogate(text.charAt(chunkEnd - 1))) {
+                    chunkEnd--;
+                }
+                if (chunkEnd == start) {
+                    flushBuffer();
+                    continue;
+                }
+                bufferCount += encoder.encode(text, start, chunkEnd, buffer, bufferCount);
+                start = chunkEnd;
+            }
+            return;
+        }
+        int maxBytes = encoder.maxBytes(end - start);
+        if (textBuffer.length < maxBytes) {
+            textBuffer = new byte[maxBytes];
+        }
+        int len = encoder.encode(text, start, end, textBuffer, 0);
+        send(textBuffer, 0, len);
+    }
+
     /**
      * Write String to outputStream.
      * <p>
@@ -320,9 +710,8 @@ public class EscPos implements Closeable, Flushable, EscPosConst {
      * @see #setCharsetName(java.lang.String)
      */
     public EscPos write(Style style, String text) throws UnsupportedEncodingException, IOException {
-        byte[] configBytes = style.getConfigBytes();
-        write(configBytes, 0, configBytes.length);
-        this.outputStream.write(text.getBytes(charsetName));
+        sendStyle(style);
+        sendText(text);
         return this;
     }
 
@@ -343,9 +732,8 @@ public class EscPos implements Closeable, Flushable, EscPosConst {
      * @see PrintModeStyle
      */
     public EscPos write(PrintModeStyle printModeStyle, String text) throws UnsupportedEncodingException, IOException {
-        byte[] configBytes = printModeStyle.getConfigBytes();
-        write(configBytes, 0, configBytes.length);
-        this.outputStream.write(text.getBytes(charsetName));
+        sendStyle(printModeStyle);
+        sendText(text);
         return this;
     }
 
@@ -379,7 +767,7 @@ public class EscPos implements Closeable, Flushable, EscPosConst {
      */
     public EscPos writeLF(Style style, String text) throws UnsupportedEncodingException, IOException {
         write(style, text);
-        write(LF);
+        send(LF);
         return this;
     }
 
@@ -397,7 +785,7 @@ public class EscPos implements Closeable, Flushable, EscPosConst {
      */
     public EscPos writeLF(PrintModeStyle printModeStyle, String text) throws UnsupportedEncodingException, IOException {
         write(printModeStyle, text);
-        write(LF);
+        send(LF);
         return this;
     }
 
@@ -430,14 +818,18 @@ public class EscPos implements Closeable, Flushable, EscPosConst {
      * @see BarCodeWrapperInterface
      */
     public EscPos write(BarCodeWrapperInterface barcode, String data) throws IOException {
-        byte[] bytes = barcode.getBytes(data);
-        write(bytes, 0, bytes.length);
+        // bar-code commands change justification
+        resetPrinterState();
+        barcode.writeTo(data, sendStream);
         return this;
 
     }
 
     /**
      * Send image to the printer.
+     * <p>
+     * The commands are streamed by the wrapper directly to this object,
+     * so large images don't exist as several full copies on the heap.
      *
      * @param wrapper objects that implements ImageWrapperInterface.
      * @param image content to be print.
@@ -446,12 +838,51 @@ public class EscPos implements Closeable, Flushable, EscPosConst {
      * @see ImageWrapperInterface
      */
     public EscPos write(ImageWrapperInterface wrapper, EscPosImage image) throws IOException {
-        byte[] bytes = wrapper.getBytes(image);
-        write(bytes, 0, bytes.length);
+        // image commands change justification and line spacing
+        resetPrinterState();
+        wrapper.writeTo(image, sendStream);
+        return this;
+
+    }
+
+    /**
+     * Send image to the printer in bands.
+     * <p>
+     * Each band is one raster command, only one band is on memory.
+     *
+     * @param wrapper raster wrapper, like RasterBitImageWrapper or GraphicsImageWrapper.
+     * @param image content to be print.
+     * @return this object
+     * @exception IOException if an I/O error occurs.
+     * @see BandedEscPosImage
+     */
+    public EscPos write(RasterWrapperInterface wrapper, BandedEscPosImage image) throws IOException {
+        // image commands change justification
+        resetPrinterState();
+        image.writeTo(wrapper, sendStream);
         return this;
 
     }
 
+    /**
+     * Send one rendered receipt template to the printer.
+     * <p>
+     * Only the fields are encoded, and the receipt is sent with one single write.
+     *
+     * @param template compiled receipt.
+     * @param values value of each field by name.
+     * @return this object
+     * @exception IOException if an I/O error occurs.
+     * @exception IllegalArgumentException if one field don't have value or if the value is invalid.
+     * @see ReceiptTemplate#render(OutputStream, Map)
+     */
+    public EscPos write(ReceiptTemplate template, Map<String, ?> values) throws IOException, IllegalArgumentException {
+        // template commands change the style
+        resetPrinterState();
+        template.render(sendStream, values);
+        return this;
+    }
+
     /**
      * Executes paper cutting. GS V
      *
@@ -461,9 +892,9 @@ public class EscPos implements Closeable, Flushable, EscPosConst {
      * @see CutMode
      */
     public EscPos cut(CutMode mode) throws IOException {
-        write(GS);
-        write('V');
-        write(mode.value);
+        send(GS);
+        send('V');
+        send(mode.value);
         return this;
     }
 
@@ -482,10 +913,9 @@ public class EscPos implements Closeable, Flushable, EscPosConst {
         if (nLines < 1 || nLines > 255) {
             throw new IllegalArgumentException("nLines must be between 1 and 255");
         }
-        byte[] configBytes = style.getConfigBytes();
-        write(configBytes, 0, configBytes.length);
+        sendStyle(style);
         for(int n = 0; n < nLines; n++){
-            write(LF);
+            send(LF);
         }
         return this;
     }
@@ -506,17 +936,24 @@ public class EscPos implements Closeable, Flushable, EscPosConst {
     /**
      * Initialize printer. Clears the data in the print buffer and resets the
      * printer.<p>
-     * reset style of this object. ASCII ESC @
+     * reset style of this object and the printer state known by this object.
+     * When the style of this object is frozen, it is replaced by a new default style. ASCII ESC @
      * <p>
      * @return this object
      * @see #setStyle(Style)
+     * @see #resetPrinterState()
      *
      * @exception IOException if an I/O error occurs.
      */
     public EscPos initializePrinter() throws IOException {
-        write(ESC);
-        write('@');
-        style.reset();
+        send(ESC);
+        send('@');
+        resetPrinterState();
+        if (style.isFrozen()) {
+            style = new Style();
+        } else {
+            style.reset();
+        }
         return this;
     }
 
@@ -545,11 +982,11 @@ public class EscPos implements Closeable, Flushable, EscPosConst {
             throw new IllegalArgumentException("t2 must be between 1 and 255");
         }
 
-        write(ESC);
-        write('p');
-        write(pinConnector.value);
-        write(t1);
-        write(t2);
+        send(ESC);
+        send('p');
+        send(pinConnector.value);
+        send(t1);
+        send(t2);
         return this;
 
     }
@@ -570,9 +1007,10 @@ public class EscPos implements Closeable, Flushable, EscPosConst {
         writeLF("Version: " + Version);
 
         feed(3);
-        getStyle().setJustification(Justification.Right);
-        writeLF("github.com");
-        writeLF("anastaciocintra/escpos-coffee");
+        // the style of this object can be frozen
+        Style right = new Style(getStyle()).setJustification(Justification.Right);
+        writeLF(right, "github.com");
+        writeLF(right, "anastaciocintra/escpos-coffee");
         feed(5);
         cut(CutMode.FULL);
         return this;
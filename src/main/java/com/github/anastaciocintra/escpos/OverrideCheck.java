@@ -0,0 +1,67 @@
+/*
+ * Use of this source code is governed by the MIT license that can be
+ * found in the LICENSE file.
+ */
+package com.github.anastaciocintra.escpos;
+
+/**
+ * Tells whether one subclass overrides one method of its base class.
+ * <p>
+ * The streaming paths, like <code>writeTo</code> of bar-codes and image wrappers,
+ * don't call the methods that were the extension points before them, like <code>getBytes</code>.
+ * Subclasses that customize those methods must still be honoured, so the streaming
+ * paths check them with one instance of this class and call the customized method
+ * when it is overridden.
+ * <p>
+ * The result is computed once by class, with reflection, and cached.
+ * <pre>
+ * private static final OverrideCheck GET_BYTES = new OverrideCheck(QRCode.class, "getBytes", String.class);
+ * ...
+ * if (GET_BYTES.isOverriddenBy(getClass())) {
+ * </pre>
+ */
+public final class OverrideCheck {
+
+    private final Class<?> base;
+    private final String name;
+    private final Class<?>[] parameterTypes;
+    private final ClassValue<Boolean> overridden = new ClassValue<Boolean>() {
+        @Override
+        protected Boolean computeValue(Class<?> type) {
+            for (Class<?> c = type; c != null && c != base; c = c.getSuperclass()) {
+                try {
+                    c.getDeclaredMethod(name, parameterTypes);
+                    return true;
+                } catch (NoSuchMethodException ex) {
+                    // not declared on this class
+                }
+            }
+            return false;
+        }
+    };
+
+    /**
+     * creates one check of one method.
+     *
+     * @param base class that declares the method.
+     * @param name name of the method.
+     * @param parameterTypes parameter types of the method.
+     */
+    public OverrideCheck(Class<?> base, String name, Class<?>... parameterTypes) {
+        this.base = base;
+        this.name = name;
+        this.parameterTypes = parameterTypes.clone();
+    }
+
+    /**
+     * Tells whether the method is overridden by one class or by one of its superclasses
+     * below the base class.
+     *
+     * @param type the class of the object, <code>getClass()</code>.
+     * @return false for the base class itself.
+     */
+    public boolean isOverriddenBy(Class<?> type) {
+        return overridden.get(type);
+    }
+
+}
@@ -6,6 +6,7 @@ package com.github.anastaciocintra.escpos;
 
 import java.io.ByteArrayOutputStream;
 import java.io.IOException;
+import java.io.UncheckedIOException;
 
 /**
  * Supply ESC/POS text style with the set of Print Mode commands
@@ -38,6 +39,13 @@ public class PrintModeStyle implements EscPosConst{
     protected boolean doubleHeight;
     protected Justification justification;
 
+    /**
+     * cached ESC/POS commands, not null only when this object is frozen.
+     */
+    private volatile byte[] frozenConfigBytes;
+
+    private static final OverrideCheck GET_CONFIG_BYTES = new OverrideCheck(PrintModeStyle.class, "getConfigBytes");
+
 
     /**
      * creates PrintModeStyle object with default values.
@@ -49,6 +57,8 @@ public class PrintModeStyle implements EscPosConst{
 
     /**
      * creates PrintModeStyle object with another PrintModeStyle instance values.
+     * <p>
+     * The new object is never frozen, even when <code>another</code> is.
      *
      * @param another value to be copied.
      */
@@ -60,10 +70,52 @@ public class PrintModeStyle implements EscPosConst{
         setJustification(another.justification);
     }
 
+    /**
+     * Freeze this object.
+     * <p>
+     * Build the ESC/POS commands only once and reuse them on each write.
+     * After that, any attempt to change the values throws IllegalStateException
+     * and the object can be safely shared between threads.
+     *
+     * @return this object
+     * @see #isFrozen()
+     * @see Style#freeze()
+     */
+    public final PrintModeStyle freeze() {
+        if (frozenConfigBytes == null) {
+            try {
+                frozenConfigBytes = getConfigBytes(null);
+            } catch (IOException ex) {
+                throw new UncheckedIOException(ex);
+            }
+        }
+        return this;
+    }
+
+    /**
+     * Get frozen state of this object.
+     *
+     * @return true if values cannot be changed anymore.
+     * @see #freeze()
+     */
+    public final boolean isFrozen() {
+        return frozenConfigBytes != null;
+    }
+
+    /**
+     * throws IllegalStateException if this object is frozen.
+     */
+    protected final void checkNotFrozen() {
+        if (frozenConfigBytes != null) {
+            throw new IllegalStateException("frozen PrintModeStyle cannot be changed");
+        }
+    }
+
     /**
      * Reset values to default.
      */
     public final void reset() {
+        checkNotFrozen();
         fontName = FontName.Font_A_Default;
         setBold(false);
         setFontSize(false,false);
@@ -79,6 +131,7 @@ public class PrintModeStyle implements EscPosConst{
      * @see #getConfigBytes()
      */
     public final PrintModeStyle setFontName(FontName fontName) {
+        checkNotFrozen();
         this.fontName = fontName;
         return this;
     }
@@ -90,6 +143,7 @@ public class PrintModeStyle implements EscPosConst{
      * @return this object
      */
     public final PrintModeStyle setBold(boolean bold) {
+        checkNotFrozen();
         this.bold = bold;
         return this;
     }
@@ -103,6 +157,7 @@ public class PrintModeStyle implements EscPosConst{
      * @see #getConfigBytes()
      */
     public final PrintModeStyle setFontSize(boolean doubleWidth, boolean doubleHeight) {
+        checkNotFrozen();
         this.doubleWidth = doubleWidth;
         this.doubleHeight = doubleHeight;
         return this;
@@ -116,6 +171,7 @@ public class PrintModeStyle implements EscPosConst{
      * @see #getConfigBytes()
      */
     public final PrintModeStyle setUnderline(boolean underline) {
+        checkNotFrozen();
         this.underline = underline;
         return this;
     }
@@ -128,6 +184,7 @@ public class PrintModeStyle implements EscPosConst{
      * @see #getConfigBytes()
      */
     public final PrintModeStyle setJustification(Justification justification) {
+        checkNotFrozen();
         this.justification = justification;
         return this;
     }
@@ -148,8 +205,69 @@ public class PrintModeStyle implements EscPosConst{
      * @exception IOException if an I/O error occurs.
      */
     public byte[] getConfigBytes() throws IOException {
+        byte[] configBytes = frozenConfigBytes;
+        if (configBytes != null) {
+            return configBytes.clone();
+        }
+        return getConfigBytes(null);
+    }
+
+    /**
+     * Tells whether one subclass overrides {@link #getConfigBytes()}.
+     */
+    boolean isConfigBytesOverridden() {
+        return GET_CONFIG_BYTES.isOverriddenBy(getClass());
+    }
+
+    /**
+     * commands sent by EscPos: the frozen commands without any copy,
+     * or the result of {@link #getConfigBytes()} when one subclass overrides it.
+     */
+    byte[] getConfigBytesToSend() throws IOException {
+        byte[] configBytes = frozenConfigBytes;
+        if (configBytes == null || isConfigBytesOverridden()) {
+            configBytes = getConfigBytes();
+        }
+        return configBytes;
+    }
+
+    /**
+     * Configure only the Print Mode commands that differ from the style already active on the printer.
+     * <p>
+     * When <code>printerStyle</code> is null, the state of the printer is unknown
+     * and all commands are written.
+     *
+     * @param printerStyle style already active on the printer, or null if unknown.
+     * @return ESC/POS commands to configure style
+     * @exception IOException if an I/O error occurs.
+     * @see #getConfigBytes()
+     */
+    public byte[] getConfigBytes(PrintModeStyle printerStyle) throws IOException {
         ByteArrayOutputStream bytes = new ByteArrayOutputStream();
-        // bit combination ...
+        int nVal = getPrintMode();
+        //
+        if (printerStyle == null || printerStyle.getPrintMode() != nVal) {
+            bytes.write(EscPosConst.ESC);
+            bytes.write('!');
+            bytes.write(nVal);
+        }
+
+        //
+        if (printerStyle == null || printerStyle.justification != justification) {
+            bytes.write(ESC);
+            bytes.write('a');
+            bytes.write(justification.value);
+        }
+
+
+        return bytes.toByteArray();
+    }
+
+    /**
+     * bit combination of ESC ! n
+     * @return value of n
+     */
+    private int getPrintMode() {
         int nVal = fontName.value;
         //
         //
@@ -161,20 +279,7 @@ public class PrintModeStyle implements EscPosConst{
         //
         //
         if(underline) nVal = nVal | 0x80;
-        //
-        //
-        bytes.write(EscPosConst.ESC);
-        bytes.write('!');
-        bytes.write(nVal);
-
-        //
-        bytes.write(ESC);
-        bytes.write('a');
-        bytes.write(justification.value);
-
-
-        return bytes.toByteArray();
+        return nVal;
     }
 
-
 }
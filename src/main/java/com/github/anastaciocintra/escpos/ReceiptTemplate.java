@@ -0,0 +1,336 @@
+/*
+ * Use of this source code is governed by the MIT license that can be
+ * found in the LICENSE file.
+ */
+package com.github.anastaciocintra.escpos;
+
+import com.github.anastaciocintra.escpos.barcode.BarCodeWrapperInterface;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UnsupportedEncodingException;
+import java.text.DecimalFormat;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Compiled receipt with constant bytes and placeholder fields.
+ * <p>
+ * Most receipts have the same header, logo, footer and bar-code layout, with only
+ * a few fields changing. The template is recorded once with {@link Builder}, that is
+ * one EscPos, so any command (styles, images, bar-codes...) can be used.
+ * The recorded commands become constant byte segments, and the fields become
+ * typed slots between them.
+ * <p>
+ * Rendering encodes only the fields, the constant segments are copied as they are,
+ * and the receipt is written with one single write.
+ * <pre>
+ * ReceiptTemplate.Builder builder = new ReceiptTemplate.Builder();
+ * builder.writeLF(title, "My Market");
+ * builder.writeField(new Style(), "customer");
+ * builder.writeNumberField(new Style(), "total", "#,##0.00");
+ * builder.writeBarCodeField(new BarCode(), "order");
+ * builder.cut(EscPos.CutMode.FULL);
+ * ReceiptTemplate template = builder.build();
+ * ...
+ * Map&lt;String, Object&gt; values = new HashMap&lt;&gt;();
+ * values.put("customer", "John");
+ * values.put("total", 12.5);
+ * values.put("order", "123456");
+ * template.render(outputStream, values);
+ * </pre>
+ * ReceiptTemplate objects are immutable and can be shared between threads.
+ */
+public class ReceiptTemplate {
+
+    /**
+     * Types of placeholder fields.
+     */
+    public enum FieldType {
+        Text,
+        Number,
+        BarCode
+    }
+
+    /**
+     * one placeholder field between two constant segments.
+     */
+    protected static class Field {
+        protected final String name;
+        protected final FieldType type;
+        protected final CodePageEncoder encoder;
+        protected final DecimalFormat numberFormat;
+        protected final BarCodeWrapperInterface barcode;
+
+        protected Field(String name, FieldType type, CodePageEncoder encoder, DecimalFormat numberFormat,
+                        BarCodeWrapperInterface barcode) {
+            this.name = name;
+            this.type = type;
+            this.encoder = encoder;
+            this.numberFormat = numberFormat;
+            this.barcode = barcode;
+        }
+    }
+
+    protected final byte[][] segments;
+    protected final Field[] fields;
+    protected final int constantSize;
+
+    /**
+     * creates one template.
+     *
+     * @param segments constant bytes, one more than fields.
+     * @param fields placeholder fields, each one after the segment with the same index.
+     * @see Builder#build()
+     */
+    protected ReceiptTemplate(byte[][] segments, Field[] fields) {
+        if (segments.length != fields.length + 1) {
+            throw new IllegalArgumentException("segments must have one more element than fields");
+        }
+        this.segments = segments;
+        this.fields = fields;
+        int size = 0;
+        for (byte[] segment : segments) {
+            size += segment.length;
+        }
+        this.constantSize = size;
+    }
+
+    /**
+     * Get the names of all placeholder fields, in order of appearance.
+     *
+     * @return field names.
+     */
+    public List<String> getFieldNames() {
+        List<String> names = new ArrayList<>();
+        for (Field field : fields) {
+            names.add(field.name);
+        }
+        return names;
+    }
+
+    /**
+     * Render the template and write it to outputStream with one single write.
+     *
+     * @param outputStream destination of the receipt.
+     * @param values value of each field by name. Number fields need one <code>Number</code>
+     * value, Text and BarCode fields use <code>toString()</code> of the value.
+     * @exception IOException if an I/O error occurs.
+     * @exception IllegalArgumentException if one field don't have value or if the value is invalid.
+     */
+    public void render(OutputStream outputStream, Map<String, ?> values) throws IOException, IllegalArgumentException {
+        Object[] data = new Object[fields.length];
+        byte[] bytes = new byte[prepare(values, data)];
+        int len = renderInto(data, bytes);
+        outputStream.write(bytes, 0, len);
+    }
+
+    /**
+     * Render the template into one array.
+     * <p>
+     * With single byte charsets, the array is filled without copies.
+     *
+     * @param values value of each field by name.
+     * @return bytes of the receipt.
+     * @exception IllegalArgumentException if one field don't have value or if the value is invalid.
+     * @see #render(OutputStream, Map)
+     */
+    public byte[] render(Map<String, ?> values) throws IllegalArgumentException {
+        Object[] data = new Object[fields.length];
+        byte[] bytes = new byte[prepare(values, data)];
+        int len = renderInto(data, bytes);
+        if (len == bytes.length) {
+            return bytes;
+        }
+        // multi byte charsets use less than the upper bound
+        return Arrays.copyOf(bytes, len);
+    }
+
+    /**
+     * Format the value of each field.
+     *
+     * @param values value of each field by name.
+     * @param data receives the text or the bar-code bytes of each field.
+     * @return upper bound of the receipt size in bytes.
+     * @exception IllegalArgumentException if one field don't have value or if the value is invalid.
+     */
+    protected int prepare(Map<String, ?> values, Object[] data) throws IllegalArgumentException {
+        int maxSize = constantSize;
+        for (int i = 0; i < fields.length; i++) {
+            Field field = fields[i];
+            Object value = values.get(field.name);
+            if (value == null) {
+                throw new IllegalArgumentException("missing value of field " + field.name);
+            }
+            switch (field.type) {
+                case Number:
+                    if (!(value instanceof Number)) {
+                        throw new IllegalArgumentException("value of field " + field.name + " must be a Number");
+                    }
+                    String number;
+                    synchronized (field.numberFormat) {
+                        number = field.numberFormat.format(value);
+                    }
+                    data[i] = number;
+                    maxSize += field.encoder.maxBytes(number.length());
+                    break;
+                case BarCode:
+                    byte[] barcodeBytes = field.barcode.getBytes(value.toString());
+                    data[i] = barcodeBytes;
+                    maxSize += barcodeBytes.length;
+                    break;
+                default:
+                    String text = value.toString();
+                    data[i] = text;
+                    maxSize += field.encoder.maxBytes(text.length());
+            }
+        }
+        return maxSize;
+    }
+
+    /**
+     * Copy the constant segments and encode the fields into one array.
+     *
+     * @param data prepared fields.
+     * @param bytes destination of the receipt, with the size returned by <code>prepare</code>.
+     * @return number of bytes of the receipt.
+     * @see #prepare(Map, Object[])
+     */
+    protected int renderInto(Object[] data, byte[] bytes) {
+        int len = 0;
+        for (int i = 0; i < fields.length; i++) {
+            System.arraycopy(segments[i], 0, bytes, len, segments[i].length);
+            len += segments[i].length;
+            if (data[i] instanceof byte[]) {
+                byte[] barcodeBytes = (byte[]) data[i];
+                System.arraycopy(barcodeBytes, 0, bytes, len, barcodeBytes.length);
+                len += barcodeBytes.length;
+            } else {
+                String text = (String) data[i];
+                len += fields[i].encoder.encode(text, 0, text.length(), bytes, len);
+            }
+        }
+        byte[] last = segments[fields.length];
+        System.arraycopy(last, 0, bytes, len, last.length);
+        return len + last.length;
+    }
+
+    /**
+     * Records one ReceiptTemplate.
+     * <p>
+     * It is one EscPos, all commands are recorded as constant bytes, and the
+     * <code>write...Field</code> methods record the placeholders.
+     * Text and Number fields are encoded with the charsetName in use when they are recorded,
+     * so they cannot be recorded with automatic selection of character code table on.
+     */
+    public static class Builder extends EscPos {
+        protected final ByteArrayOutputStream segment;
+        protected final List<byte[]> segments = new ArrayList<>();
+        protected final List<Field> fields = new ArrayList<>();
+
+        /**
+         * creates one Builder.
+         */
+        public Builder() {
+            this(new ByteArrayOutputStream());
+        }
+
+        private Builder(ByteArrayOutputStream segment) {
+            super(segment);
+            this.segment = segment;
+        }
+
+        /**
+         * Record one text field.
+         * <p>
+         * Configure the style and leave one placeholder to the text.
+         *
+         * @param style text style to be used.
+         * @param name name of the field.
+         * @return this object.
+         * @exception IOException if an I/O error occurs.
+         * @exception UnsupportedEncodingException If the named charset is not supported
+         * @exception IllegalStateException if automatic selection of character code table is on.
+         */
+        public Builder writeField(Style style, String name) throws IOException, IllegalStateException {
+            checkTextField();
+            sendStyle(style);
+            addField(name, FieldType.Text, null, null);
+            return this;
+        }
+
+        /**
+         * Record one number field.
+         *
+         * @param style text style to be used.
+         * @param name name of the field.
+         * @param pattern used to format the number.
+         * @return this object.
+         * @exception IOException if an I/O error occurs.
+         * @exception UnsupportedEncodingException If the named charset is not supported
+         * @exception IllegalArgumentException if the pattern is invalid.
+         * @exception IllegalStateException if automatic selection of character code table is on.
+         * @see java.text.DecimalFormat
+         */
+        public Builder writeNumberField(Style style, String name, String pattern)
+                throws IOException, IllegalArgumentException, IllegalStateException {
+            checkTextField();
+            sendStyle(style);
+            addField(name, FieldType.Number, new DecimalFormat(pattern), null);
+            return this;
+        }
+
+        /**
+         * Record one bar-code field.
+         * <p>
+         * The bar-code object must not be changed after that.
+         *
+         * @param barcode objects that implements BarCodeWrapperInterface.
+         * @param name name of the field with the content of bar-code.
+         * @return this object.
+         * @exception IOException if an I/O error occurs.
+         */
+        public Builder writeBarCodeField(BarCodeWrapperInterface barcode, String name) throws IOException {
+            addField(name, FieldType.BarCode, null, barcode);
+            // bar-code commands change justification
+            resetPrinterState();
+            return this;
+        }
+
+        private void checkTextField() throws IllegalStateException {
+            if (autoCodeTables != 0) {
+                // the tables of the value are known only when it is rendered
+                throw new IllegalStateException("text fields cannot be recorded with automatic selection of character code table");
+            }
+        }
+
+        private void addField(String name, FieldType type, DecimalFormat numberFormat, BarCodeWrapperInterface barcode)
+                throws IOException {
+            CodePageEncoder fieldEncoder = null;
+            if (type != FieldType.BarCode) {
+                fieldEncoder = CodePageEncoder.forCharsetName(charsetName);
+            }
+            flush();
+            segments.add(segment.toByteArray());
+            segment.reset();
+            fields.add(new Field(name, type, fieldEncoder, numberFormat, barcode));
+        }
+
+        /**
+         * Compile the recorded commands.
+         *
+         * @return the template.
+         * @exception IOException if an I/O error occurs.
+         */
+        public ReceiptTemplate build() throws IOException {
+            flush();
+            byte[][] allSegments = new byte[segments.size() + 1][];
+            segments.toArray(allSegments);
+            allSegments[segments.size()] = segment.toByteArray();
+            return new ReceiptTemplate(allSegments, fields.toArray(new Field[0]));
+        }
+    }
+
+}
@@ -6,6 +6,7 @@ package com.github.anastaciocintra.escpos;
 
 import java.io.ByteArrayOutputStream;
 import java.io.IOException;
+import java.io.UncheckedIOException;
 
 /**
  * Supply ESC/POS text style commands
@@ -92,6 +93,13 @@ public class Style implements EscPosConst {
     protected int lineSpacing;
     protected ColorMode colorMode;
 
+    /**
+     * cached ESC/POS commands, not null only when this object is frozen.
+     */
+    private volatile byte[] frozenConfigBytes;
+
+    private static final OverrideCheck GET_CONFIG_BYTES = new OverrideCheck(Style.class, "getConfigBytes");
+
     /**
      * creates Style object with default values.
      */
@@ -101,6 +109,8 @@ public class Style implements EscPosConst {
 
     /**
      * creates Style object with another Style instance values.
+     * <p>
+     * The new object is never frozen, even when <code>another</code> is.
      *
      * @param another value to be copied.
      */
@@ -110,15 +120,61 @@ public class Style implements EscPosConst {
         setFontSize(another.fontWidth, another.fontHeight);
         setUnderline(another.underline);
         setJustification(another.justification);
-        defaultLineSpacing = another.defaultLineSpacing;
         setLineSpacing(another.lineSpacing);
+        defaultLineSpacing = another.defaultLineSpacing;
         setColorMode(another.colorMode);
     }
 
+    /**
+     * Freeze this object.
+     * <p>
+     * Build the ESC/POS commands only once and reuse them on each write.
+     * After that, any attempt to change the values throws IllegalStateException
+     * and the object can be safely shared between threads.
+     * Use it for a fixed set of styles, like:
+     * <pre>
+     * public static final Style TITLE = new Style().setBold(true).freeze();
+     * </pre>
+     *
+     * @return this object
+     * @see #isFrozen()
+     * @see #Style(Style)
+     */
+    public final Style freeze() {
+        if (frozenConfigBytes == null) {
+            try {
+                frozenConfigBytes = getConfigBytes(null);
+            } catch (IOException ex) {
+                throw new UncheckedIOException(ex);
+            }
+        }
+        return this;
+    }
+
+    /**
+     * Get frozen state of this object.
+     *
+     * @return true if values cannot be changed anymore.
+     * @see #freeze()
+     */
+    public final boolean isFrozen() {
+        return frozenConfigBytes != null;
+    }
+
+    /**
+     * throws IllegalStateException if this object is frozen.
+     */
+    protected final void checkNotFrozen() {
+        if (frozenConfigBytes != null) {
+            throw new IllegalStateException("frozen Style cannot be changed");
+        }
+    }
+
     /**
      * Reset values to default.
      */
     public final void reset() {
+        checkNotFrozen();
         fontName = FontName.Font_A_Default;
         fontWidth = FontSize._1;
         fontHeight = FontSize._1;
@@ -137,6 +193,7 @@ public class Style implements EscPosConst {
      * @see #getConfigBytes()
      */
     public final Style setFontName(FontName fontName) {
+        checkNotFrozen();
         this.fontName = fontName;
         return this;
     }
@@ -148,6 +205,7 @@ public class Style implements EscPosConst {
      * @return this object
      */
     public final Style setBold(boolean bold) {
+        checkNotFrozen();
         this.bold = bold;
         return this;
     }
@@ -161,6 +219,7 @@ public class Style implements EscPosConst {
      * @see #getConfigBytes()
      */
     public final Style setFontSize(FontSize fontWidth, FontSize fontHeight) {
+        checkNotFrozen();
         this.fontWidth = fontWidth;
         this.fontHeight = fontHeight;
         return this;
@@ -174,6 +233,7 @@ public class Style implements EscPosConst {
      * @see #getConfigBytes()
      */
     public final Style setUnderline(Underline underline) {
+        checkNotFrozen();
         this.underline = underline;
         return this;
     }
@@ -186,6 +246,7 @@ public class Style implements EscPosConst {
      * @see #getConfigBytes()
      */
     public final Style setJustification(Justification justification) {
+        checkNotFrozen();
         this.justification = justification;
         return this;
     }
@@ -199,6 +260,7 @@ public class Style implements EscPosConst {
      * @see #getConfigBytes()
      */
     public final Style setLineSpacing(int lineSpacing) throws IllegalArgumentException {
+        checkNotFrozen();
         if (lineSpacing < 0 || lineSpacing > 255) {
             throw new IllegalArgumentException("lineSpacing must be between 0 and 255");
         }
@@ -214,6 +276,7 @@ public class Style implements EscPosConst {
      * @see #getConfigBytes()
      */
     public final Style resetLineSpacing() {
+        checkNotFrozen();
         this.defaultLineSpacing = true;
         lineSpacing = 0;
         return this;
@@ -226,6 +289,7 @@ public class Style implements EscPosConst {
      * @return this object
      */
     public final Style setColorMode(ColorMode colorMode) {
+        checkNotFrozen();
         this.colorMode = colorMode;
         return this;
     }
@@ -275,43 +339,98 @@ public class Style implements EscPosConst {
      * @exception IOException if an I/O error occurs.
      */
     public byte[] getConfigBytes() throws IOException {
+        byte[] configBytes = frozenConfigBytes;
+        if (configBytes != null) {
+            return configBytes.clone();
+        }
+        return getConfigBytes(null);
+    }
+
+    /**
+     * Tells whether one subclass overrides {@link #getConfigBytes()}.
+     */
+    boolean isConfigBytesOverridden() {
+        return GET_CONFIG_BYTES.isOverriddenBy(getClass());
+    }
+
+    /**
+     * commands sent by EscPos: the frozen commands without any copy,
+     * or the result of {@link #getConfigBytes()} when one subclass overrides it.
+     */
+    byte[] getConfigBytesToSend() throws IOException {
+        byte[] configBytes = frozenConfigBytes;
+        if (configBytes == null || isConfigBytesOverridden()) {
+            configBytes = getConfigBytes();
+        }
+        return configBytes;
+    }
+
+    /**
+     * Configure only the font Style commands that differ from the style already active on the printer.
+     * <p>
+     * Each command of {@link #getConfigBytes()} is compared with <code>printerStyle</code>
+     * and is written only when its value changed.
+     * When <code>printerStyle</code> is null, the state of the printer is unknown
+     * and all commands are written.
+     *
+     * @param printerStyle style already active on the printer, or null if unknown.
+     * @return ESC/POS commands to configure style
+     * @exception IOException if an I/O error occurs.
+     * @see #getConfigBytes()
+     */
+    public byte[] getConfigBytes(Style printerStyle) throws IOException {
         ByteArrayOutputStream bytes = new ByteArrayOutputStream();
         //
-        bytes.write(ESC);
-        bytes.write('M');
-        bytes.write(fontName.value);
-        //
-        bytes.write(ESC);
-        bytes.write('E');
-        int n = bold ? 1 : 0;
-        bytes.write(n);
+        if (printerStyle == null || printerStyle.fontName != fontName) {
+            bytes.write(ESC);
+            bytes.write('M');
+            bytes.write(fontName.value);
+        }
         //
-        n = fontWidth.value << 4 | fontHeight.value;
-        bytes.write(GS);
-        bytes.write('!');
-        bytes.write(n);
+        if (printerStyle == null || printerStyle.bold != bold) {
+            bytes.write(ESC);
+            bytes.write('E');
+            int n = bold ? 1 : 0;
+            bytes.write(n);
+        }
         //
-        bytes.write(ESC);
-        bytes.write('-');
-        bytes.write(underline.value);
+        if (printerStyle == null || printerStyle.fontWidth != fontWidth || printerStyle.fontHeight != fontHeight) {
+            int n = fontWidth.value << 4 | fontHeight.value;
+            bytes.write(GS);
+            bytes.write('!');
+            bytes.write(n);
+        }
         //
-        bytes.write(ESC);
-        bytes.write('a');
-        bytes.write(justification.value);
+        if (printerStyle == null || printerStyle.underline != underline) {
+            bytes.write(ESC);
+            bytes.write('-');
+            bytes.write(underline.value);
+        }
         //
-        if (defaultLineSpacing) {
+        if (printerStyle == null || printerStyle.justification != justification) {
             bytes.write(ESC);
-            bytes.write('2');
+            bytes.write('a');
+            bytes.write(justification.value);
+        }
+        //
+        if (printerStyle == null || printerStyle.defaultLineSpacing != defaultLineSpacing
+                || printerStyle.lineSpacing != lineSpacing) {
+            if (defaultLineSpacing) {
+                bytes.write(ESC);
+                bytes.write('2');
 
-        } else {
-            bytes.write(ESC);
-            bytes.write('3');
-            bytes.write(lineSpacing);
+            } else {
+                bytes.write(ESC);
+                bytes.write('3');
+                bytes.write(lineSpacing);
+            }
         }
         //
-        bytes.write(GS);
-        bytes.write('B');
-        bytes.write(colorMode.value);
+        if (printerStyle == null || printerStyle.colorMode != colorMode) {
+            bytes.write(GS);
+            bytes.write('B');
+            bytes.write(colorMode.value);
+        }
 
         return bytes.toByteArray();
     }
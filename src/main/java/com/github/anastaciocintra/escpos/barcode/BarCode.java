@@ -5,7 +5,11 @@
 package com.github.anastaciocintra.escpos.barcode;
 
 import com.github.anastaciocintra.escpos.EscPosConst;
+import com.github.anastaciocintra.escpos.OverrideCheck;
 import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
 
 /**
  * Supply ESC/POS BarCode commands  
@@ -149,6 +153,8 @@ public class BarCode implements EscPosConst, BarCodeWrapperInterface{
     
 
 
+    private static final OverrideCheck GET_BYTES = new OverrideCheck(BarCode.class, "getBytes", String.class);
+
     /**
      * Creates object with default values. 
      */
@@ -257,46 +263,66 @@ public class BarCode implements EscPosConst, BarCodeWrapperInterface{
     @Override
     public byte[] getBytes(String data)throws IllegalArgumentException{
         ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try {
+            writeCommands(data, bytes);
+        } catch (IOException ex) {
+            // not thrown by ByteArrayOutputStream
+            throw new UncheckedIOException(ex);
+        }
+        return bytes.toByteArray();
+    }
+
+    /**
+     * Write the BarCode commands directly to the outputStream. <p>
+     * When one subclass overrides getBytes, the bytes returned by it are written.
+     *
+     * @param data to be printed in bar-code
+     * @param outputStream destination of the commands
+     * @exception IOException if an I/O error occurs.
+     * @throws IllegalArgumentException when data do no match with regex.
+     * @see #getBytes(String)
+     */
+    @Override
+    public void writeTo(String data, OutputStream outputStream) throws IOException, IllegalArgumentException {
+        if (GET_BYTES.isOverriddenBy(getClass())) {
+            byte[] bytes = getBytes(data);
+            outputStream.write(bytes, 0, bytes.length);
+            return;
+        }
+        writeCommands(data, outputStream);
+    }
+
+    /**
+     * Write the commands of {@link #getBytes(String)}, used by getBytes and writeTo.
+     *
+     * @param data to be printed
+     * @param outputStream destination of the commands
+     * @exception IOException if an I/O error occurs.
+     */
+    protected void writeCommands(String data, OutputStream outputStream) throws IOException, IllegalArgumentException {
         if(!data.matches(sytem.regex)){
             throw new IllegalArgumentException(String.format("data must match with \"%s\"",sytem.regex) );
         }
-        
-        //
-        bytes.write(GS);
-        bytes.write('h');
-        bytes.write(height);
-        //
-        bytes.write(GS);
-        bytes.write('w');
-        bytes.write(width);
-        //
-        bytes.write(GS);
-        bytes.write('H');
-        bytes.write(HRIPosition.value);
-        //
-        bytes.write(GS);
-        bytes.write('f');
-        bytes.write(HRIFont.value);
-        //
-        bytes.write(ESC);
-        bytes.write('a');
-        bytes.write(justification.value);
-        
-        
-        ////
-        bytes.write(GS);
-        bytes.write('k');
 
-        bytes.write(sytem.code);
+        byte[] header = {
+                GS, 'h', (byte) height,
+                GS, 'w', (byte) width,
+                GS, 'H', (byte) HRIPosition.value,
+                GS, 'f', (byte) HRIFont.value,
+                ESC, 'a', (byte) justification.value,
+                ////
+                GS, 'k', (byte) sytem.code
+        };
+        outputStream.write(header);
+
         if(sytem.code <=6){
-            bytes.write(data.getBytes(),0,data.length());
-            bytes.write(NUL);
+            outputStream.write(data.getBytes(),0,data.length());
+            outputStream.write(NUL);
         }else{
-            bytes.write(data.length());
-            bytes.write(data.getBytes(),0,data.length());
+            outputStream.write(data.length());
+            outputStream.write(data.getBytes(),0,data.length());
             
         }
-        return bytes.toByteArray();
     }
     
 }
@@ -5,8 +5,23 @@
 package com.github.anastaciocintra.escpos.barcode;
 
 import com.github.anastaciocintra.escpos.EscPosConst;
+import java.io.IOException;
+import java.io.OutputStream;
 
 public interface BarCodeWrapperInterface<T> {
     public byte[] getBytes(String data);
     public T setJustification(EscPosConst.Justification justification);
+
+    /**
+     * Write the ESC/POS commands of the bar-code directly to the outputStream.
+     *
+     * @param data content of bar-code
+     * @param outputStream destination of the commands
+     * @exception IOException if an I/O error occurs.
+     * @see #getBytes(String)
+     */
+    public default void writeTo(String data, OutputStream outputStream) throws IOException {
+        byte[] bytes = getBytes(data);
+        outputStream.write(bytes, 0, bytes.length);
+    }
 }
@@ -5,7 +5,11 @@
 package com.github.anastaciocintra.escpos.barcode;
 
 import com.github.anastaciocintra.escpos.EscPosConst;
+import com.github.anastaciocintra.escpos.OverrideCheck;
 import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
 
 /**
  * Supply ESC/POS PDF417 bar-code commands
@@ -89,6 +93,8 @@ public class PDF417 implements EscPosConst, BarCodeWrapperInterface{
 
 
     
+    private static final OverrideCheck GET_BYTES = new OverrideCheck(PDF417.class, "getBytes", String.class);
+
     /**
      * Creates object with default values. 
      */
@@ -266,101 +272,113 @@ public class PDF417 implements EscPosConst, BarCodeWrapperInterface{
     @Override
     public byte[] getBytes(String data){
         ByteArrayOutputStream bytes = new ByteArrayOutputStream();
-        
-        //
-        bytes.write(ESC);
-        bytes.write('a');
-        bytes.write(justification.value);
-        
-        // Function 065
-        bytes.write(GS);
-        bytes.write('(');
-        bytes.write('k');
-        bytes.write(3); // pL size of bytes
-        bytes.write(0); // pH size of bytes
-        bytes.write(48); // cn
-        bytes.write(65); // fn
-        bytes.write(numberOfColumns); // m
-        
-        // Function 066
-        bytes.write(GS);
-        bytes.write('(');
-        bytes.write('k');
-        bytes.write(3); // pL size of bytes
-        bytes.write(0); // pH size of bytes
-        bytes.write(48); // cn
-        bytes.write(66); // fn
-        bytes.write(numberOfRows); // m
-        
-        // Function 067
-        bytes.write(GS);
-        bytes.write('(');
-        bytes.write('k');
-        bytes.write(3); // pL size of bytes
-        bytes.write(0); // pH size of bytes
-        bytes.write(48); // cn
-        bytes.write(67); // fn
-        bytes.write(width); // m
-        
-        // Function 068
-        bytes.write(GS);
-        bytes.write('(');
-        bytes.write('k');
-        bytes.write(3); // pL size of bytes
-        bytes.write(0); // pH size of bytes
-        bytes.write(48); // cn
-        bytes.write(68); // fn
-        bytes.write(height); // m
-        
-        // Function 069
-        bytes.write(GS);
-        bytes.write('(');
-        bytes.write('k');
-        bytes.write(4); // pL size of bytes
-        bytes.write(0); // pH size of bytes
-        bytes.write(48); // cn
-        bytes.write(69); // fn
-        bytes.write(48); // m
-        bytes.write(errorLevel.value); // n
-        
-        // Function 070
-        bytes.write(GS);
-        bytes.write('(');
-        bytes.write('k');
-        bytes.write(3); // pL size of bytes
-        bytes.write(0); // pH size of bytes
-        bytes.write(48); // cn
-        bytes.write(70); // fn
-        bytes.write(option.value); // m
+        try {
+            writeCommands(data, bytes);
+        } catch (IOException ex) {
+            // not thrown by ByteArrayOutputStream
+            throw new UncheckedIOException(ex);
+        }
+        return bytes.toByteArray();
+    }
 
+    /**
+     * Write the PDF417 commands directly to the outputStream. <p>
+     * When one subclass overrides getBytes, the bytes returned by it are written.
+     *
+     * @param data to be printed in barcode
+     * @param outputStream destination of the commands
+     * @exception IOException if an I/O error occurs.
+     * @see #getBytes(String)
+     */
+    @Override
+    public void writeTo(String data, OutputStream outputStream) throws IOException {
+        if (GET_BYTES.isOverriddenBy(getClass())) {
+            byte[] bytes = getBytes(data);
+            outputStream.write(bytes, 0, bytes.length);
+            return;
+        }
+        writeCommands(data, outputStream);
+    }
 
+    /**
+     * Write the commands of {@link #getBytes(String)}, used by getBytes and writeTo.
+     *
+     * @param data to be printed
+     * @param outputStream destination of the commands
+     * @exception IOException if an I/O error occurs.
+     */
+    protected void writeCommands(String data, OutputStream outputStream) throws IOException {
         // Function 080
         int numberOfBytes = data.length() + 3;
         int pL = numberOfBytes & 0xFF;
         int pH = (numberOfBytes & 0xFF00) >> 8 ;
 
-        bytes.write(GS);
-        bytes.write('(');
-        bytes.write('k');
-        bytes.write(pL); // pL size of bytes
-        bytes.write(pH); // pH size of bytes
-        bytes.write(48); // cn
-        bytes.write(80); // fn
-        bytes.write(48); // m
-        bytes.write(data.getBytes(),0,data.length());
-        
-        // Function 081
-        bytes.write(GS);
-        bytes.write('(');
-        bytes.write('k');
-        bytes.write(3); // pL size of bytes
-        bytes.write(0); // pH size of bytes
-        bytes.write(48); // cn
-        bytes.write(81); // fn
-        bytes.write(48); // m
-        
+        byte[] header = {
+                ESC, 'a', (byte) justification.value,
+                // Function 065
+                GS, '(', 'k',
+                3, // pL size of bytes
+                0, // pH size of bytes
+                48, // cn
+                65, // fn
+                (byte) numberOfColumns, // m
+                // Function 066
+                GS, '(', 'k',
+                3, // pL size of bytes
+                0, // pH size of bytes
+                48, // cn
+                66, // fn
+                (byte) numberOfRows, // m
+                // Function 067
+                GS, '(', 'k',
+                3, // pL size of bytes
+                0, // pH size of bytes
+                48, // cn
+                67, // fn
+                (byte) width, // m
+                // Function 068
+                GS, '(', 'k',
+                3, // pL size of bytes
+                0, // pH size of bytes
+                48, // cn
+                68, // fn
+                (byte) height, // m
+                // Function 069
+                GS, '(', 'k',
+                4, // pL size of bytes
+                0, // pH size of bytes
+                48, // cn
+                69, // fn
+                48, // m
+                (byte) errorLevel.value, // n
+                // Function 070
+                GS, '(', 'k',
+                3, // pL size of bytes
+                0, // pH size of bytes
+                48, // cn
+                70, // fn
+                (byte) option.value, // m
+                // Function 080
+                GS, '(', 'k',
+                (byte) pL, // pL size of bytes
+                (byte) pH, // pH size of bytes
+                48, // cn
+                80, // fn
+                48 // m
+        };
+        outputStream.write(header);
+        outputStream.write(data.getBytes(),0,data.length());
 
-        return bytes.toByteArray();
+        // Function 081
+        byte[] print = {
+                GS, '(', 'k',
+                3, // pL size of bytes
+                0, // pH size of bytes
+                48, // cn
+                81, // fn
+                48 // m
+        };
+        outputStream.write(print);
     }    
 
     
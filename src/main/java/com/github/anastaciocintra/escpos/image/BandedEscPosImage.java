@@ -0,0 +1,82 @@
+/*
+ * Use of this source code is governed by the MIT license that can be
+ * found in the LICENSE file.
+ */
+package com.github.anastaciocintra.escpos.image;
+
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * Supply raster images in bands, to print images of any height.
+ * <p>
+ * {@link EscPosImage} keeps the image and its raster on memory. This class pulls the rows
+ * from one {@link ImageRowSource}, converts and packs one band of rows, and writes
+ * this band as one raster command, so the memory used is about one band whatever the height of the image.
+ * The rows are converted in scan order, the result is the same of {@link EscPosImage}
+ * with the same {@link Bitonal} algorithm, including error diffusion.
+ * @see com.github.anastaciocintra.escpos.EscPos#write(RasterWrapperInterface, BandedEscPosImage)
+ */
+public class BandedEscPosImage {
+    public static final int DEFAULT_BAND_HEIGHT = 256;
+    /**
+     * max raster bytes of one band, the size of GS ( L has 16 bits.
+     */
+    public static final int MAX_BAND_BYTES = 65535 - 10;
+
+    protected final ImageRowSource source;
+    protected final Bitonal bitonalAlgorithm;
+    protected int bandHeight = DEFAULT_BAND_HEIGHT;
+
+    /**
+     * creates one BandedEscPosImage
+     * @param source rows of the image
+     * @param bitonalAlgorithm Algorithm that transform RGB to bitonal
+     */
+    public BandedEscPosImage(ImageRowSource source, Bitonal bitonalAlgorithm) {
+        this.source = source;
+        this.bitonalAlgorithm = bitonalAlgorithm;
+    }
+
+    /**
+     * Set the number of rows of each raster command.
+     * <p>
+     * Wide images can have less rows by band, to fit on {@link #MAX_BAND_BYTES}.
+     * @param bandHeight rows by band. Default value is 256
+     * @return this object
+     */
+    public BandedEscPosImage setBandHeight(int bandHeight) {
+        if (bandHeight < 1) {
+            throw new IllegalArgumentException("bandHeight must be > 0");
+        }
+        this.bandHeight = bandHeight;
+        return this;
+    }
+
+    /**
+     * Write the image in bands directly to the outputStream.
+     * @param wrapper writes the raster command of each band
+     * @param outputStream destination of the commands
+     * @exception IOException if an I/O error occurs.
+     */
+    public void writeTo(RasterWrapperInterface wrapper, OutputStream outputStream) throws IOException {
+        int width = source.getWidth();
+        int height = source.getHeight();
+        int horizontalBytes = (width + 7) / 8;
+        int rows = Math.max(1, Math.min(bandHeight, MAX_BAND_BYTES / Math.max(1, horizontalBytes)));
+        byte[] band = new byte[horizontalBytes * Math.min(rows, Math.max(1, height))];
+        int[] argbRow = new int[width];
+        int[] bitonalRow = new int[width];
+        // one converter for all bands, the error diffusion goes on to the next band
+        Bitonal.RowConverter converter = bitonalAlgorithm.newRowConverter(width);
+        for (int bandY = 0; bandY < height; bandY += rows) {
+            int bandRows = Math.min(rows, height - bandY);
+            for (int i = 0; i < bandRows; i++) {
+                source.readRow(bandY + i, argbRow);
+                converter.getBitonalRow(argbRow, bandY + i, bitonalRow);
+                EscPosImage.packRow(bitonalRow, width, band, i * horizontalBytes);
+            }
+            wrapper.writeRaster(band, 0, width, bandRows, outputStream);
+        }
+    }
+}
@@ -5,7 +5,11 @@
 package com.github.anastaciocintra.escpos.image;
 
 import com.github.anastaciocintra.escpos.EscPosConst;
+import com.github.anastaciocintra.escpos.OverrideCheck;
 import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
 import java.util.List;
 
 /**
@@ -39,6 +43,8 @@ public class BitImageWrapper implements ImageWrapperInterface, EscPosConst{
 
     
     
+    private static final OverrideCheck GET_BYTES = new OverrideCheck(BitImageWrapper.class, "getBytes", EscPosImage.class);
+
     public BitImageWrapper(){
         justification = EscPosConst.Justification.Left_Default;
         mode = BitImageMode._24DotDoubleDensity_Default;
@@ -89,36 +95,64 @@ public class BitImageWrapper implements ImageWrapperInterface, EscPosConst{
     @Override
     public byte[] getBytes(EscPosImage image) {
         ByteArrayOutputStream bytes = new ByteArrayOutputStream();
-        //
-        bytes.write(ESC);
-        bytes.write('a');
-        bytes.write(justification.value);
+        try {
+            writeCommands(image, bytes);
+        } catch (IOException ex) {
+            // not thrown by ByteArrayOutputStream
+            throw new UncheckedIOException(ex);
+        }
+        return bytes.toByteArray();
+    }
+
+    /**
+     * Write the Bit Image commands directly to the outputStream. <p>
+     * The raster rows are not copied. <p>
+     * When one subclass overrides getBytes, the bytes returned by it are written.
+     *
+     * @param image to be printed
+     * @param outputStream destination of the commands
+     * @exception IOException if an I/O error occurs.
+     * @see #getBytes(EscPosImage)
+     */
+    @Override
+    public void writeTo(EscPosImage image, OutputStream outputStream) throws IOException {
+        if (GET_BYTES.isOverriddenBy(getClass())) {
+            byte[] bytes = getBytes(image);
+            outputStream.write(bytes, 0, bytes.length);
+            return;
+        }
+        writeCommands(image, outputStream);
+    }
+
+    /**
+     * Write the commands of {@link #getBytes(EscPosImage)}, used by getBytes and writeTo.
+     *
+     * @param image to be printed
+     * @param outputStream destination of the commands
+     * @exception IOException if an I/O error occurs.
+     */
+    protected void writeCommands(EscPosImage image, OutputStream outputStream) throws IOException {
+        byte[] header = {
+                ESC, 'a', (byte) justification.value,
+                ESC, '3', 16
+        };
+        outputStream.write(header);
 
-        // 
-        bytes.write(ESC);
-        bytes.write('3');
-        bytes.write(16);
-        
         // getting first and second bytes separatted
         int nL = image.getWidthOfImageInBits() & 0xFF;
         int nH = (image.getWidthOfImageInBits() & 0xFF00) >> 8 ;
-        
+        byte[] rowHeader = {ESC, '*', (byte) mode.value, (byte) nL, (byte) nH};
+
         List< ByteArrayOutputStream > RasterColumns = image.getRasterRows(mode.bitsForVerticalData);
         for(ByteArrayOutputStream  rol: RasterColumns){
             //write one rol to print
-            bytes.write(ESC);
-            bytes.write('*');
-            bytes.write(mode.value);
-            bytes.write(nL);
-            bytes.write(nH);
-            bytes.write(rol.toByteArray(),0,rol.size());
-            
-            bytes.write(LF);
-            
+            outputStream.write(rowHeader);
+            rol.writeTo(outputStream);
+
+            outputStream.write(LF);
+
         }
-        
-        //
-        return bytes.toByteArray();
+
     }
     
 }
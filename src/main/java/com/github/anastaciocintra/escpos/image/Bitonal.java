@@ -36,6 +36,64 @@ public abstract class Bitonal {
         return zeroOrOne(alpha, red, green, blue, x, y);
         
     }
+    /**
+     * Translate one row of pixels to 0 or 1 (print or not).
+     * <p>
+     * Same result of {@link #zeroOrOne(int, int, int, int, int, int) zeroOrOne} on each pixel,
+     * subclasses can override it with one tight loop.
+     * Used by {@link EscPosImage} when {@link #getBitonalVal(CoffeeImage, int, int) getBitonalVal} is not overridden.
+     * @param argbRow pixels in the default RGB color model, from x = 0 to width - 1
+     * @param width number of pixels of the row
+     * @param y the Y coordinate of the row
+     * @param bitonalRow receives 0 or 1 for each pixel
+     */
+    public void getBitonalRow(int[] argbRow, int width, int y, int[] bitonalRow){
+        for (int x = 0; x < width; x++) {
+            int RGBA = argbRow[x];
+            bitonalRow[x] = zeroOrOne((RGBA >> 24) & 0xFF, (RGBA >> 16) & 0xFF, (RGBA >> 8) & 0xFF, RGBA & 0xFF, x, y);
+        }
+    }
+
+    /**
+     * Start the conversion by rows of one image.
+     * <p>
+     * The converter keeps the state of one conversion, like the error of error diffusion,
+     * so it is created for each image and used by one thread, from the first row to the last.
+     * By default it calls {@link #getBitonalRow(int[], int, int, int[]) getBitonalRow}, that has no state.
+     * @param width number of pixels of each row
+     * @return converter of the rows of one image
+     */
+    public RowConverter newRowConverter(int width){
+        return (argbRow, y, bitonalRow) -> getBitonalRow(argbRow, width, y, bitonalRow);
+    }
+
+    /**
+     * Converts the rows of one image.
+     * @see Bitonal#newRowConverter(int)
+     */
+    public interface RowConverter {
+        /**
+         * Translate one row of pixels to 0 or 1 (print or not).
+         * @param argbRow pixels in the default RGB color model
+         * @param y the Y coordinate of the row
+         * @param bitonalRow receives 0 or 1 for each pixel
+         */
+        void getBitonalRow(int[] argbRow, int y, int[] bitonalRow);
+    }
+
+    /**
+     * Tells whether the rows can be converted independently, on any order and on parallel.
+     * <p>
+     * Algorithms that carry state from one pixel to the next, like error diffusion,
+     * need to return false.
+     * @return true, the result of {@link #zeroOrOne(int, int, int, int, int, int) zeroOrOne}
+     * depends only on its arguments.
+     * @see EscPosImage#setParallel(java.util.concurrent.ForkJoinPool)
+     */
+    public boolean isRowIndependent(){
+        return true;
+    }
+
     /**
      * Subclasses need to translate the 8-bits RGBA colors to 0 or 1 (print or not) <p>
      * for any coordinate x, y of the BufferedImage.
@@ -0,0 +1,35 @@
+/*
+ * Use of this source code is governed by the MIT license that can be
+ * found in the LICENSE file.
+ */
+package com.github.anastaciocintra.escpos.image;
+
+/**
+ * Implements Atkinson error diffusion. <p>
+ * 1/8 of the error of each pixel goes to two pixels on the right, three below
+ * and one two rows below, only 3/4 of the error is distributed, resulting in
+ * more contrast. Keeps three error rows in memory.
+ */
+public class BitonalAtkinson extends BitonalErrorDiffusion {
+
+    private static final int[][] KERNEL = {
+        {1, 0, 1}, {2, 0, 1},
+        {-1, 1, 1}, {0, 1, 1}, {1, 1, 1},
+        {0, 2, 1}
+    };
+
+    /**
+     * construct BitonalAtkinson
+     * @param threshold threshold value with range 0 to 255.
+     */
+    public BitonalAtkinson(int threshold) {
+        super(threshold, KERNEL, 8);
+    }
+
+    /**
+     * construct BitonalAtkinson with default threshold value (127).
+     */
+    public BitonalAtkinson() {
+        this(127);
+    }
+}
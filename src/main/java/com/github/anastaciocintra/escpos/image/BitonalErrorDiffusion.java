@@ -0,0 +1,151 @@
+/*
+ * Use of this source code is governed by the MIT license that can be
+ * found in the LICENSE file.
+ */
+package com.github.anastaciocintra.escpos.image;
+
+import java.util.Arrays;
+
+/**
+ * Base for error diffusion algorithms, like Floyd-Steinberg and Atkinson. <p>
+ * The quantization error of each pixel is distributed to the next pixels of the
+ * same row and of the next rows, with the weights of one kernel. For this reason,
+ * the rows are converted in scan order by one {@link #newRowConverter(int) converter} of each image,
+ * keeping only one error row for each row of the kernel.
+ * The instance has no state, so it can be shared.<p>
+ * {@link #zeroOrOne(int, int, int, int, int, int) zeroOrOne} has no state and uses only the threshold,
+ * it is used when {@link EscPosImage#getBitonalVal(int, int)} is overridden.
+ * @see BitonalFloydSteinberg
+ * @see BitonalAtkinson
+ */
+public abstract class BitonalErrorDiffusion extends Bitonal {
+    /**
+     * max distance on x of the kernel.
+     */
+    private static final int MARGIN = 2;
+
+    protected final int threshold;
+    private final int[] kernelX;
+    private final int[] kernelY;
+    private final int[] kernelWeight;
+    private final int divisor;
+    private final int kernelRows;
+
+    /**
+     * construct BitonalErrorDiffusion
+     * @param threshold threshold value with range 0 to 255.
+     * @param kernel each item is {dx, dy, weight} with dx between -2 and 2 and dy between 0 and 2,
+     *               dy = 0 only with dx &gt; 0.
+     * @param divisor the error is multiplied by weight / divisor.
+     */
+    protected BitonalErrorDiffusion(int threshold, int[][] kernel, int divisor) {
+        if(threshold < 0 || threshold > 255){
+            throw new IllegalArgumentException("threshold range must be between 0 and 255");
+        }
+        if(divisor < 1){
+            throw new IllegalArgumentException("divisor must be > 0");
+        }
+        this.threshold = threshold;
+        this.divisor = divisor;
+        kernelX = new int[kernel.length];
+        kernelY = new int[kernel.length];
+        kernelWeight = new int[kernel.length];
+        int maxY = 0;
+        for(int i = 0; i < kernel.length; i++){
+            int dx = kernel[i][0];
+            int dy = kernel[i][1];
+            if(dx < -MARGIN || dx > MARGIN || dy < 0 || dy > 2 || (dy == 0 && dx <= 0)){
+                throw new IllegalArgumentException("invalid kernel item");
+            }
+            kernelX[i] = dx;
+            kernelY[i] = dy;
+            kernelWeight[i] = kernel[i][2];
+            maxY = Math.max(maxY, dy);
+        }
+        this.kernelRows = maxY + 1;
+    }
+
+    /**
+     * Error diffusion needs the rows in scan order.
+     * @return false
+     */
+    @Override
+    public boolean isRowIndependent() {
+        return false;
+    }
+
+    /**
+     * translate RGBA colors to 0 or 1 (print or not) using only the threshold value.
+     * @param alpha range from 0 to 255
+     * @param red range from 0 to 255
+     * @param green range from 0 to 255
+     * @param blue range from 0 to 255
+     * @param x the X coordinate of the image 
+     * @param y the Y coordinate of the image 
+     * @return  0 or 1     
+     * @see Bitonal#zeroOrOne(int, int, int, int, int, int) 
+     */
+    @Override
+    public int zeroOrOne(int alpha, int red, int green, int blue, int x, int y) {
+        int luminance = 0xFF;
+        if (alpha > 127) {
+            luminance = (red + green + blue) / 3;
+        }
+        return (luminance < threshold) ? 1 : 0;
+    }
+
+    /**
+     * translate one row of RGBA colors to 0 or 1 (print or not), diffusing the error
+     * only to the next pixels of the same row.<p>
+     * Images are converted by {@link #newRowConverter(int)}, that diffuses the error to the next rows.
+     * @see Bitonal#getBitonalRow(int[], int, int, int[])
+     */
+    @Override
+    public void getBitonalRow(int[] argbRow, int width, int y, int[] bitonalRow) {
+        newRowConverter(width).getBitonalRow(argbRow, y, bitonalRow);
+    }
+
+    /**
+     * Start the error diffusion of one image.
+     * @param width number of pixels of each row
+     * @return converter that must be called with y from zero to the last row, in this order.
+     */
+    @Override
+    public RowConverter newRowConverter(int width) {
+        return new ErrorRows(width);
+    }
+
+    /**
+     * error rows of one image, cyclic by y.
+     */
+    private class ErrorRows implements RowConverter {
+        private final int width;
+        private final int[][] rows;
+
+        private ErrorRows(int width) {
+            this.width = width;
+            rows = new int[kernelRows][width + 2 * MARGIN];
+        }
+
+        @Override
+        public void getBitonalRow(int[] argbRow, int y, int[] bitonalRow) {
+            int[] current = rows[y % kernelRows];
+            for (int x = 0; x < width; x++) {
+                int RGBA = argbRow[x];
+                int luminance = 0xFF;
+                if ((RGBA >>> 24) > 127) {
+                    luminance = (((RGBA >> 16) & 0xFF) + ((RGBA >> 8) & 0xFF) + (RGBA & 0xFF)) / 3;
+                }
+                int value = luminance + current[x + MARGIN] / divisor;
+                int bit = (value < threshold) ? 1 : 0;
+                int error = value - (bit == 1 ? 0 : 0xFF);
+                bitonalRow[x] = bit;
+                for (int i = 0; i < kernelWeight.length; i++) {
+                    rows[(y + kernelY[i]) % kernelRows][x + kernelX[i] + MARGIN] += error * kernelWeight[i];
+                }
+            }
+            // reused by the row y + kernelRows
+            Arrays.fill(current, 0);
+        }
+    }
+}
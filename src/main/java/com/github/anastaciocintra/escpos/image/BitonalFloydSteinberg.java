@@ -0,0 +1,33 @@
+/*
+ * Use of this source code is governed by the MIT license that can be
+ * found in the LICENSE file.
+ */
+package com.github.anastaciocintra.escpos.image;
+
+/**
+ * Implements Floyd-Steinberg error diffusion. <p>
+ * The error of each pixel is distributed 7/16 to the right, 3/16 below left,
+ * 5/16 below and 1/16 below right. Keeps two error rows in memory.
+ */
+public class BitonalFloydSteinberg extends BitonalErrorDiffusion {
+
+    private static final int[][] KERNEL = {
+        {1, 0, 7},
+        {-1, 1, 3}, {0, 1, 5}, {1, 1, 1}
+    };
+
+    /**
+     * construct BitonalFloydSteinberg
+     * @param threshold threshold value with range 0 to 255.
+     */
+    public BitonalFloydSteinberg(int threshold) {
+        super(threshold, KERNEL, 16);
+    }
+
+    /**
+     * construct BitonalFloydSteinberg with default threshold value (127).
+     */
+    public BitonalFloydSteinberg() {
+        this(127);
+    }
+}
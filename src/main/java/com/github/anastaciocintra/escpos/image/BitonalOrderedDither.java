@@ -132,4 +132,25 @@ public class BitonalOrderedDither extends Bitonal{
         int threshold = ditherMatrix[x % matrixWidth][y % matrixHeight];
         return (luminance < threshold) ? 1 : 0;
     }
+
+    /**
+     * translate one row of RGBA colors to 0 or 1 (print or not).
+     * @see Bitonal#getBitonalRow(int[], int, int, int[])
+     */
+    @Override
+    public void getBitonalRow(int[] argbRow, int width, int y, int[] bitonalRow) {
+        int matrixY = y % matrixHeight;
+        int matrixX = 0;
+        for (int x = 0; x < width; x++) {
+            int RGBA = argbRow[x];
+            int luminance = 0xFF;
+            if ((RGBA >>> 24) > 127) {
+                luminance = (((RGBA >> 16) & 0xFF) + ((RGBA >> 8) & 0xFF) + (RGBA & 0xFF)) / 3;
+            }
+            bitonalRow[x] = (luminance < ditherMatrix[matrixX][matrixY]) ? 1 : 0;
+            if (++matrixX == matrixWidth) {
+                matrixX = 0;
+            }
+        }
+    }
 }
@@ -48,5 +48,21 @@ public class BitonalThreshold extends Bitonal{
             luminance = (red + green + blue) / 3;
         }
         return (luminance < threshold) ? 1 : 0;    }
+
+    /**
+     * translate one row of RGBA colors to 0 or 1 (print or not).
+     * @see Bitonal#getBitonalRow(int[], int, int, int[])
+     */
+    @Override
+    public void getBitonalRow(int[] argbRow, int width, int y, int[] bitonalRow) {
+        for (int x = 0; x < width; x++) {
+            int RGBA = argbRow[x];
+            int luminance = 0xFF;
+            if ((RGBA >>> 24) > 127) {
+                luminance = (((RGBA >> 16) & 0xFF) + ((RGBA >> 8) & 0xFF) + (RGBA & 0xFF)) / 3;
+            }
+            bitonalRow[x] = (luminance < threshold) ? 1 : 0;
+        }
+    }
     
 }
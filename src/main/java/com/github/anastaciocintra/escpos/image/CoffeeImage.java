@@ -42,4 +42,32 @@ public interface CoffeeImage {
      * @see BufferedImage#getRGB(int, int) 
      */
     public abstract int getRGB(int x, int y);
+
+    /**
+     * Returns an array of integer pixels in the default RGB color model (TYPE_INT_ARGB) and default sRGB color space,
+     * from a portion of the image data.
+     * The default implementation calls {@link #getRGB(int, int)} for each pixel,
+     * implementations should override it with one bulk copy.
+     * @param startX - the starting X coordinate
+     * @param startY - the starting Y coordinate
+     * @param w - width of region
+     * @param h - height of region
+     * @param rgbArray - if not null, the rgb pixels are written here
+     * @param offset - offset into the rgbArray
+     * @param scansize - scanline stride for the rgbArray
+     * @return array of RGB pixels.
+     * @see BufferedImage#getRGB(int, int, int, int, int[], int, int)
+     */
+    public default int[] getRGB(int startX, int startY, int w, int h, int[] rgbArray, int offset, int scansize) {
+        if (rgbArray == null) {
+            rgbArray = new int[offset + h * scansize];
+        }
+        for (int y = 0; y < h; y++) {
+            int index = offset + y * scansize;
+            for (int x = 0; x < w; x++) {
+                rgbArray[index++] = getRGB(startX + x, startY + y);
+            }
+        }
+        return rgbArray;
+    }
 }
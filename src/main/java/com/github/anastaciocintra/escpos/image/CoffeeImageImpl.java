@@ -1,6 +1,7 @@
 package com.github.anastaciocintra.escpos.image;
 
 import java.awt.image.BufferedImage;
+import java.awt.image.Raster;
 
 /**
  * implements CoffeeImage using Java BufferedImage
@@ -33,4 +34,38 @@ public class CoffeeImageImpl implements CoffeeImage {
     public int getRGB(int x, int y) {
         return image.getRGB(x,y);
     }
+
+    /**
+     * Returns an array of integer pixels in the default RGB color model.
+     * <p>
+     * Images of type TYPE_INT_ARGB and TYPE_INT_RGB are copied from the raster
+     * without color conversion, other types use {@link BufferedImage#getRGB(int, int, int, int, int[], int, int)}.
+     * @see CoffeeImage#getRGB(int, int, int, int, int[], int, int)
+     */
+    @Override
+    public int[] getRGB(int startX, int startY, int w, int h, int[] rgbArray, int offset, int scansize) {
+        int type = image.getType();
+        if (type != BufferedImage.TYPE_INT_ARGB && type != BufferedImage.TYPE_INT_RGB) {
+            return image.getRGB(startX, startY, w, h, rgbArray, offset, scansize);
+        }
+        if (rgbArray == null) {
+            rgbArray = new int[offset + h * scansize];
+        }
+        Raster raster = image.getRaster();
+        int[] row = (offset == 0 && scansize == w && h == 1) ? rgbArray : new int[w];
+        for (int y = 0; y < h; y++) {
+            raster.getDataElements(startX, startY + y, w, 1, row);
+            int index = offset + y * scansize;
+            if (row != rgbArray) {
+                System.arraycopy(row, 0, rgbArray, index, w);
+            }
+            if (type == BufferedImage.TYPE_INT_RGB) {
+                // opaque, like BufferedImage.getRGB
+                for (int x = index; x < index + w; x++) {
+                    rgbArray[x] |= 0xFF000000;
+                }
+            }
+        }
+        return rgbArray;
+    }
 }
@@ -4,18 +4,51 @@
  */
 package com.github.anastaciocintra.escpos.image;
 
+import com.github.anastaciocintra.escpos.OverrideCheck;
 import java.io.ByteArrayOutputStream;
+import java.lang.reflect.Method;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
 
 /**
  * Supply raster patterns images 
  */
 public class EscPosImage {
+    /**
+     * images with less pixels than that are converted on the caller thread.
+     */
+    public static final int PARALLEL_MIN_PIXELS = 256 * 1024;
+    /**
+     * min rows of each band converted on parallel.
+     */
+    public static final int PARALLEL_MIN_BAND_ROWS = 64;
+
+    private static final OverrideCheck GET_RASTER_BYTES = new OverrideCheck(EscPosImage.class, "getRasterBytes");
+    private static final OverrideCheck IMAGE_2_ESC_POS_RASTER = new OverrideCheck(EscPosImage.class, "image2EscPosRaster");
+
     protected final CoffeeImage image;
 
     protected final Bitonal bitonalAlgorithm;
 
+    /**
+     * true when the pixels are converted by rows, with {@link Bitonal#getBitonalRow(int[], int, int, int[])}.
+     */
+    protected final boolean bitonalByRow;
+
+    protected ForkJoinPool forkJoinPool;
+
+    /**
+     * packed 1-bit matrix of the image, computed once, see {@link #getBitonalMatrix()}.
+     */
+    protected byte[] bitonalMatrix;
+    /**
+     * raster bytes returned by {@link #getRasterBytes()}, filled on its first call.
+     * @deprecated the wrappers write {@link #getBitonalMatrix()} without this copy.
+     */
+    @Deprecated
     protected ByteArrayOutputStream baCachedEscPosRaster = new ByteArrayOutputStream();
     protected List< ByteArrayOutputStream > CashedEscPosRasterRows_8 = new ArrayList();
     protected List< ByteArrayOutputStream > CachedEscPosRasterRows_24 = new ArrayList();
@@ -30,6 +63,45 @@ public class EscPosImage {
     public EscPosImage(CoffeeImage image, Bitonal bitonalAlgorithm){
         this.image = image;
         this.bitonalAlgorithm = bitonalAlgorithm;
+        this.bitonalByRow = !isGetBitonalValOverridden();
+    }
+
+    /**
+     * Set parallel conversion of the image in horizontal bands.
+     * <p>
+     * Used only for images with at least {@link #PARALLEL_MIN_PIXELS} pixels,
+     * when {@link Bitonal#isRowIndependent()} and {@link Bitonal#getBitonalVal(CoffeeImage, int, int)}
+     * is not overridden. The result is the same of the serial conversion.
+     * @param forkJoinPool pool that converts the bands, like <code>ForkJoinPool.commonPool()</code>,
+     *                     or null to serial conversion (default).
+     * @return this object
+     */
+    public EscPosImage setParallel(ForkJoinPool forkJoinPool){
+        this.forkJoinPool = forkJoinPool;
+        return this;
+    }
+
+    /**
+     * The conversion by rows can be used only when nobody customizes the conversion of each pixel.
+     */
+    private boolean isGetBitonalValOverridden() {
+        try {
+            if (bitonalAlgorithm.getClass().getMethod("getBitonalVal", CoffeeImage.class, int.class, int.class)
+                    .getDeclaringClass() != Bitonal.class) {
+                return true;
+            }
+            for (Class<?> c = getClass(); c != EscPosImage.class; c = c.getSuperclass()) {
+                for (Method method : c.getDeclaredMethods()) {
+                    if (method.getName().equals("getBitonalVal")
+                            && Arrays.equals(method.getParameterTypes(), new Class<?>[]{int.class, int.class})) {
+                        return true;
+                    }
+                }
+            }
+            return false;
+        } catch (NoSuchMethodException | SecurityException ex) {
+            return true;
+        }
     }
 
 
@@ -47,9 +119,8 @@ public class EscPosImage {
     }
     
     public int getRasterSizeInBytes(){
-        if(baCachedEscPosRaster.size() > 0) return baCachedEscPosRaster.size();
-        baCachedEscPosRaster = image2EscPosRaster();
-        return baCachedEscPosRaster.size();
+        if(isRasterOverridden()) return getRasterBytes().size();
+        return getBitonalMatrix().length;
     }
     /**
      * get raster bytes of image in Rows pattern.<p>
@@ -79,66 +150,171 @@ public class EscPosImage {
     }
     
     /**
-     * transform RGB image to raster Rows format
+     * transform RGB image to raster Rows format.
+     * <p>
+     * Each column has bitsPerColumn_8_or_24 / 8 bytes, the last row is filled with zeros
+     * below the image.
      * @param bitsPerColumn_8_or_24 possible values are 8 or 24
      * @return a list of rows in raster pattern
      */
     protected  List< ByteArrayOutputStream > image2Rows(int bitsPerColumn_8_or_24){
         List< ByteArrayOutputStream > lRasterRows = new ArrayList();
-        
-        
-        List<CoffeeImage> lRGBImageRows = new ArrayList();
-        for(int y = 0; y < image.getHeight();y+=bitsPerColumn_8_or_24){
-            int height = bitsPerColumn_8_or_24;
-            if((y + height) > image.getHeight()){
-                height = image.getHeight() - y;
-            }
-            CoffeeImage row = (CoffeeImage) image.getSubimage(0, y, image.getWidth(), height);
-            lRGBImageRows.add(row);
-        }
+        byte[] matrix = getBitonalMatrix();
+        int width = image.getWidth();
+        int height = image.getHeight();
+        int horizontalBytes = getHorizontalBytesOfRaster();
+        int bytesPerColumn = bitsPerColumn_8_or_24 / 8;
+        byte[] columns = new byte[horizontalBytes * 8 * bytesPerColumn];
 
-        int heightOffset = 0;
-
-        for(CoffeeImage RGBRow   : lRGBImageRows){
-            ByteArrayOutputStream baColumBytes = new ByteArrayOutputStream();
-            for(int x = 0; x < RGBRow.getWidth();x++){
-                int col = 0;
-                int max_y = Integer.min(bitsPerColumn_8_or_24, RGBRow.getHeight());
-                int bit = 0;
-                int bitsWritten = 0;
-                for(int y = 0; y < max_y; y++){
-                    int val = getBitonalVal(x, y+heightOffset);
-                    col = col | (val << (7 - bit));
-                    bit++;
-                    if(bit == 8){
-                        baColumBytes.write(col);
-                        bitsWritten +=8;
-                        col = 0;
-                        bit = 0;
+        for(int heightOffset = 0; heightOffset < height; heightOffset += bitsPerColumn_8_or_24){
+            for(int band = 0; band < bytesPerColumn; band++){
+                int y = heightOffset + band * 8;
+                for(int xByte = 0; xByte < horizontalBytes; xByte++){
+                    // 8 rows of 8 pixels
+                    long block = 0;
+                    for(int i = 0; i < 8; i++){
+                        block <<= 8;
+                        if(y + i < height){
+                            block |= matrix[(y + i) * horizontalBytes + xByte] & 0xFF;
+                        }
                     }
-
-                }
-                if(bit > 0){
-                    baColumBytes.write(col);
-                    bitsWritten+=8;
-                    while(bitsWritten < bitsPerColumn_8_or_24){
-                        baColumBytes.write(0);
-                        bitsWritten +=8;
+                    // 8 columns of 8 pixels
+                    block = transpose8x8(block);
+                    int index = xByte * 8 * bytesPerColumn + band;
+                    for(int i = 7; i >= 0; i--){
+                        columns[index] = (byte) (block >>> (i * 8));
+                        index += bytesPerColumn;
                     }
                 }
             }
+            ByteArrayOutputStream baColumBytes = new ByteArrayOutputStream(width * bytesPerColumn);
+            baColumBytes.write(columns, 0, width * bytesPerColumn);
             lRasterRows.add(baColumBytes);
-            heightOffset+=bitsPerColumn_8_or_24;
         }
         
         return lRasterRows;
+    }
 
-        
+    /**
+     * Transpose one 8x8 bit matrix, the most significant byte is the first row
+     * and the most significant bit of each byte is the first column.
+     * @param block 8 rows of 8 bits
+     * @return 8 columns of 8 bits
+     */
+    protected static long transpose8x8(long block) {
+        long t;
+        t = (block ^ (block >>> 7)) & 0x00AA00AA00AA00AAL;
+        block = block ^ t ^ (t << 7);
+        t = (block ^ (block >>> 14)) & 0x0000CCCC0000CCCCL;
+        block = block ^ t ^ (t << 14);
+        t = (block ^ (block >>> 28)) & 0x00000000F0F0F0F0L;
+        block = block ^ t ^ (t << 28);
+        return block;
+    }
+
+    /**
+     * get the packed 1-bit matrix of the image. <p>
+     * The bitonal algorithm runs only once for each instance, raster and column formats
+     * are built from this matrix.
+     * @return <code>getHorizontalBytesOfRaster()</code> bytes for each row, the most significant bit
+     * of each byte is the leftmost pixel and 1 means print.
+     */
+    public byte[] getBitonalMatrix(){
+        if(bitonalMatrix == null){
+            bitonalMatrix = image2BitonalMatrix();
+        }
+        return bitonalMatrix;
+    }
+
+    /**
+     * transform RGB image to one packed 1-bit matrix.
+     * @return packed matrix
+     * @see #getBitonalMatrix()
+     */
+    protected byte[] image2BitonalMatrix(){
+        byte[] matrix = new byte[getHorizontalBytesOfRaster() * image.getHeight()];
+        ForkJoinPool pool = forkJoinPool;
+        if(pool != null && pool.getParallelism() > 1 && bitonalByRow && bitonalAlgorithm.isRowIndependent()
+                && (long) image.getWidth() * image.getHeight() >= PARALLEL_MIN_PIXELS){
+            int bandRows = Math.max(PARALLEL_MIN_BAND_ROWS, image.getHeight() / (pool.getParallelism() * 4));
+            pool.invoke(new BandTask(matrix, 0, image.getHeight(), bandRows));
+        }else{
+            image2BitonalRows(matrix, 0, image.getHeight());
+        }
+        return matrix;
+    }
+
+    /**
+     * transform the rows yStart to yEnd - 1 of the image, the packed rows are
+     * written on its position of matrix.
+     * @param matrix packed matrix of all image
+     * @param yStart first row
+     * @param yEnd last row (exclusive)
+     */
+    protected void image2BitonalRows(byte[] matrix, int yStart, int yEnd){
+        int width = image.getWidth();
+        int horizontalBytes = getHorizontalBytesOfRaster();
+        int[] argbRow = new int[width];
+        int[] bitonalRow = new int[width];
+        Bitonal.RowConverter converter = bitonalAlgorithm.newRowConverter(width);
+        for(int y = yStart; y < yEnd; y++){
+            getBitonalRow(converter, y, argbRow, bitonalRow);
+            packRow(bitonalRow, width, matrix, y * horizontalBytes);
+        }
+    }
+
+    /**
+     * splits the rows in halves until bandRows.
+     */
+    private class BandTask extends RecursiveAction {
+        private final byte[] matrix;
+        private final int yStart;
+        private final int yEnd;
+        private final int bandRows;
+
+        private BandTask(byte[] matrix, int yStart, int yEnd, int bandRows) {
+            this.matrix = matrix;
+            this.yStart = yStart;
+            this.yEnd = yEnd;
+            this.bandRows = bandRows;
+        }
+
+        @Override
+        protected void compute() {
+            if(yEnd - yStart <= bandRows){
+                image2BitonalRows(matrix, yStart, yEnd);
+                return;
+            }
+            int middle = (yStart + yEnd) >>> 1;
+            invokeAll(new BandTask(matrix, yStart, middle, bandRows),
+                    new BandTask(matrix, middle, yEnd, bandRows));
+        }
+    }
+
+    /**
+     * pack one row of 0 or 1 values, 8 pixels by byte.
+     */
+    protected static void packRow(int[] bitonalRow, int width, byte[] matrix, int offset) {
+        int x = 0;
+        for(; x + 8 <= width; x += 8){
+            matrix[offset++] = (byte) ((bitonalRow[x] << 7) | (bitonalRow[x + 1] << 6)
+                    | (bitonalRow[x + 2] << 5) | (bitonalRow[x + 3] << 4)
+                    | (bitonalRow[x + 4] << 3) | (bitonalRow[x + 5] << 2)
+                    | (bitonalRow[x + 6] << 1) | bitonalRow[x + 7]);
+        }
+        if(x < width){
+            int last = 0;
+            for(int bit = 7; x < width; x++, bit--){
+                last |= bitonalRow[x] << bit;
+            }
+            matrix[offset] = (byte) last;
+        }
     }
     
     /**
      * get raster bytes of image. <p>
-     * Utilize cached bytes if available.
+     * Utilize cached bytes if available. The wrappers write {@link #getBitonalMatrix()}
+     * without this copy, unless one subclass overrides this method or {@link #image2EscPosRaster()}.
      * @return bytes of raster image.
      */
     public ByteArrayOutputStream getRasterBytes(){
@@ -146,6 +322,19 @@ public class EscPosImage {
         baCachedEscPosRaster = image2EscPosRaster();
         return baCachedEscPosRaster;
     }
+
+    /**
+     * raster written by the wrappers: the bitonal matrix, or the bytes of
+     * {@link #getRasterBytes()} when one subclass customizes them.
+     */
+    byte[] getRasterToWrite(){
+        if(isRasterOverridden()) return getRasterBytes().toByteArray();
+        return getBitonalMatrix();
+    }
+
+    private boolean isRasterOverridden(){
+        return GET_RASTER_BYTES.isOverriddenBy(getClass()) || IMAGE_2_ESC_POS_RASTER.isOverriddenBy(getClass());
+    }
     
     /** 
      * Call the custom algorithm to determine print or not print on each coordinates. <p>
@@ -159,34 +348,36 @@ public class EscPosImage {
         return bitonalAlgorithm.getBitonalVal(image, x, y);
         
     }
+
+    /**
+     * Determine print or not print on each coordinates of one row. <p>
+     * Reads the row with one bulk call when {@link #getBitonalVal(int, int)} is not overridden.
+     * @param converter converter of the rows of this conversion
+     * @param y the Y coordinate of the row
+     * @param argbRow work array with the width of the image
+     * @param bitonalRow receives 0 or 1 for each X coordinate
+     * @see Bitonal#newRowConverter(int)
+     */
+    protected void getBitonalRow(Bitonal.RowConverter converter, int y, int[] argbRow, int[] bitonalRow) {
+        int width = image.getWidth();
+        if (bitonalByRow) {
+            image.getRGB(0, y, width, 1, argbRow, 0, width);
+            converter.getBitonalRow(argbRow, y, bitonalRow);
+            return;
+        }
+        for (int x = 0; x < width; x++) {
+            bitonalRow[x] = getBitonalVal(x, y);
+        }
+    }
     
     /**
      * transform RGB image in raster format.
      * @return raster byte array 
      */
     protected ByteArrayOutputStream image2EscPosRaster(){
-        ByteArrayOutputStream byteArray = new ByteArrayOutputStream();
-        int  Byte;
-        int  bit;
-        for(int y = 0; y < image.getHeight(); y++){
-            Byte = 0;
-            bit = 0;
-            for(int x = 0; x < image.getWidth(); x++){
-                int val = getBitonalVal(x, y);
-                Byte = Byte | (val << (7 - bit));
-                bit++;
-                if(bit == 8){
-                    byteArray.write(Byte);
-                    Byte = 0;
-                    bit = 0;
-                }  
-            }
-            if (bit > 0) {
-                byteArray.write(Byte);
-
-            }
-            
-        }
+        byte[] matrix = getBitonalMatrix();
+        ByteArrayOutputStream byteArray = new ByteArrayOutputStream(matrix.length);
+        byteArray.write(matrix, 0, matrix.length);
         return byteArray;
     }
     
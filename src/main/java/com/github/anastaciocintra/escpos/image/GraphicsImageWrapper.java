@@ -5,14 +5,18 @@
 package com.github.anastaciocintra.escpos.image;
 
 import com.github.anastaciocintra.escpos.EscPosConst;
+import com.github.anastaciocintra.escpos.OverrideCheck;
 import static com.github.anastaciocintra.escpos.EscPosConst.ESC;
 import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
 
 /**
  * Supply ESC/POS Graphics print Image commands.<p>
  * using <code>GS(L</code>
  */
-public class GraphicsImageWrapper implements EscPosConst, ImageWrapperInterface{
+public class GraphicsImageWrapper implements EscPosConst, ImageWrapperInterface, RasterWrapperInterface{
     
     /**
      * Values for Raster Bit Image mode.
@@ -35,6 +39,8 @@ public class GraphicsImageWrapper implements EscPosConst, ImageWrapperInterface{
     protected GraphicsImageBxBy graphicsImageBxBy;
 
 
+    private static final OverrideCheck GET_BYTES = new OverrideCheck(GraphicsImageWrapper.class, "getBytes", EscPosImage.class);
+
     public GraphicsImageWrapper(){
         justification = EscPosConst.Justification.Left_Default;
         graphicsImageBxBy = GraphicsImageBxBy.Normal_Default;
@@ -76,67 +82,109 @@ public class GraphicsImageWrapper implements EscPosConst, ImageWrapperInterface{
      * 
      * @param image to be printed
      * @return bytes of ESC/POS
-     * @see EscPosImage#getRasterBytes() 
+     * @see EscPosImage#getBitonalMatrix() 
      * @see EscPosImage#getRasterSizeInBytes() 
      */ 
     @Override
     public byte[] getBytes(EscPosImage image) {
         ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try {
+            writeCommands(image, bytes);
+        } catch (IOException ex) {
+            // not thrown by ByteArrayOutputStream
+            throw new UncheckedIOException(ex);
+        }
+        return bytes.toByteArray();
+    }
+
+    /**
+     * Write the Graphics Image commands directly to the outputStream. <p>
+     * The raster bytes are not copied. <p>
+     * When one subclass overrides getBytes, the bytes returned by it are written.
+     *
+     * @param image to be printed
+     * @param outputStream destination of the commands
+     * @exception IOException if an I/O error occurs.
+     * @see #getBytes(EscPosImage)
+     */
+    @Override
+    public void writeTo(EscPosImage image, OutputStream outputStream) throws IOException {
+        if (GET_BYTES.isOverriddenBy(getClass())) {
+            byte[] bytes = getBytes(image);
+            outputStream.write(bytes, 0, bytes.length);
+            return;
+        }
+        writeCommands(image, outputStream);
+    }
+
+    /**
+     * Write the commands of {@link #getBytes(EscPosImage)}, used by getBytes and writeTo.
+     *
+     * @param image to be printed
+     * @param outputStream destination of the commands
+     * @exception IOException if an I/O error occurs.
+     */
+    protected void writeCommands(EscPosImage image, OutputStream outputStream) throws IOException {
+        // write bytes straight from the packed matrix of the image, unless customized
+        writeRaster(image.getRasterToWrite(), 0, image.getWidthOfImageInBits(), image.getHeightOfImageInBits(), outputStream);
+    }
+
+    /**
+     * Write the Graphics Image commands of one raster directly to the outputStream.
+     * <p>
+     * The raster must have up to 65525 bytes.
+     *
+     * @see RasterWrapperInterface#writeRaster(byte[], int, int, int, OutputStream)
+     */
+    @Override
+    public void writeRaster(byte[] raster, int offset, int widthInBits, int heightInBits, OutputStream outputStream) throws IOException {
+        int rasterSize = (widthInBits + 7) / 8 * heightInBits;
+        writeHeader(rasterSize, widthInBits, heightInBits, outputStream);
+        outputStream.write(raster, offset, rasterSize);
+        writePrint(outputStream);
+    }
+
+    private void writeHeader(int rasterSize, int horizontalBits, int verticalBits, OutputStream outputStream) throws IOException {
         //
-        bytes.write(ESC);
-        bytes.write('a');
-        bytes.write(justification.value);
-        //
-        int paramSize = image.getRasterSizeInBytes() + 10;
+        int paramSize = rasterSize + 10;
         int pL = paramSize & 0xFF;
         int pH = (paramSize & 0xFF00) >> 8 ;
 
-        bytes.write(GS);
-        bytes.write('(');
-        bytes.write('L');
-        bytes.write(pL); // pl
-        bytes.write(pH); // ph
-        bytes.write(48); // m
-        bytes.write(112); //fn
-        bytes.write(48); // a
-        bytes.write(graphicsImageBxBy.bx); // bx
-        bytes.write(graphicsImageBxBy.by); // by
-        bytes.write(49); // c
-
         //  bits in horizontal direction for the bit image
-        int horizontalBits = image.getWidthOfImageInBits();
         int xL = horizontalBits & 0xFF;
         int xH = (horizontalBits & 0xFF00) >> 8 ;
         // 
         //  bits in vertical direction for the bit image
-        int verticalBits = image.getHeightOfImageInBits();
         // getting first and second bytes separatted
         int yL = verticalBits & 0xFF;
         int yH = (verticalBits & 0xFF00) >> 8 ;
-        
-        bytes.write(xL);
-        bytes.write(xH);
-        bytes.write(yL);
-        bytes.write(yH);
-        // write bytes
-        byte [] rasterBytes = image.getRasterBytes().toByteArray();
-        bytes.write(rasterBytes,0,rasterBytes.length);
-        
+
+        byte[] header = {
+                ESC, 'a', (byte) justification.value,
+                // function 112
+                GS, '(', 'L', (byte) pL, (byte) pH,
+                48, // m
+                112, // fn
+                48, // a
+                (byte) graphicsImageBxBy.bx, // bx
+                (byte) graphicsImageBxBy.by, // by
+                49, // c
+                (byte) xL, (byte) xH, (byte) yL, (byte) yH
+        };
+        outputStream.write(header);
+    }
+
+    private void writePrint(OutputStream outputStream) throws IOException {
         // function 050
-        bytes.write(GS);
-        bytes.write('(');
-        bytes.write('L');
-        bytes.write(2); // pl
-        bytes.write(0); // ph
-        bytes.write(48); //m
-        bytes.write(50); //fn
-        
-        
-        
+        byte[] print = {
+                GS, '(', 'L',
+                2, // pl
+                0, // ph
+                48, //m
+                50 //fn
+        };
+        outputStream.write(print);
 
-        //
-        return bytes.toByteArray();
-        
     }
     
 }
@@ -0,0 +1,88 @@
+/*
+ * Use of this source code is governed by the MIT license that can be
+ * found in the LICENSE file.
+ */
+package com.github.anastaciocintra.escpos.image;
+
+import java.awt.Rectangle;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import javax.imageio.ImageReadParam;
+import javax.imageio.ImageReader;
+
+/**
+ * Supply the rows of one image read by one {@link ImageReader}, one band of rows at a time.
+ * <p>
+ * Only the band is decoded to memory, using the source region of {@link ImageReadParam}.
+ * <pre>
+ * try (ImageInputStream input = ImageIO.createImageInputStream(file)) {
+ *     ImageReader reader = ImageIO.getImageReaders(input).next();
+ *     reader.setInput(input);
+ *     escpos.write(new RasterBitImageWrapper(),
+ *             new BandedEscPosImage(new ImageReaderRowSource(reader, 0), new BitonalFloydSteinberg()));
+ *     reader.dispose();
+ * }
+ * </pre>
+ * Some readers, like PNG, decode the image from the start on each band, use large bands
+ * with them.
+ */
+public class ImageReaderRowSource implements ImageRowSource {
+    public static final int DEFAULT_BAND_HEIGHT = 256;
+
+    protected final ImageReader reader;
+    protected final int imageIndex;
+    protected final int width;
+    protected final int height;
+    protected int bandHeight = DEFAULT_BAND_HEIGHT;
+    private BufferedImage band;
+    private int bandY;
+
+    /**
+     * creates one ImageReaderRowSource
+     * @param reader reader with its input already set
+     * @param imageIndex index of the image on the input
+     * @exception IOException if an I/O error occurs.
+     */
+    public ImageReaderRowSource(ImageReader reader, int imageIndex) throws IOException {
+        this.reader = reader;
+        this.imageIndex = imageIndex;
+        this.width = reader.getWidth(imageIndex);
+        this.height = reader.getHeight(imageIndex);
+    }
+
+    /**
+     * Set the number of rows decoded at a time.
+     * @param bandHeight rows by read. Default value is 256
+     * @return this object
+     */
+    public ImageReaderRowSource setBandHeight(int bandHeight) {
+        if (bandHeight < 1) {
+            throw new IllegalArgumentException("bandHeight must be > 0");
+        }
+        this.bandHeight = bandHeight;
+        return this;
+    }
+
+    @Override
+    public int getWidth() {
+        return width;
+    }
+
+    @Override
+    public int getHeight() {
+        return height;
+    }
+
+    @Override
+    public void readRow(int y, int[] argbRow) throws IOException {
+        if (band == null || y < bandY || y >= bandY + band.getHeight()) {
+            // release the last band before the next one
+            band = null;
+            ImageReadParam param = reader.getDefaultReadParam();
+            param.setSourceRegion(new Rectangle(0, y, width, Math.min(bandHeight, height - y)));
+            band = reader.read(imageIndex, param);
+            bandY = y;
+        }
+        band.getRGB(0, y - bandY, width, 1, argbRow, 0, width);
+    }
+}
@@ -0,0 +1,62 @@
+/*
+ * Use of this source code is governed by the MIT license that can be
+ * found in the LICENSE file.
+ */
+package com.github.anastaciocintra.escpos.image;
+
+import java.io.IOException;
+
+/**
+ * Supply the rows of one image, from the top to the bottom.
+ * <p>
+ * Used by {@link BandedEscPosImage} to print images without having all pixels in memory.
+ * @see ImageReaderRowSource
+ */
+public interface ImageRowSource {
+
+    /**
+     * Returns the width of the image
+     * @return width in pixels
+     */
+    public int getWidth();
+
+    /**
+     * Returns the height of the image
+     * @return height in pixels
+     */
+    public int getHeight();
+
+    /**
+     * Read one row of pixels in the default RGB color model (TYPE_INT_ARGB).
+     * <p>
+     * The rows are read in order, from 0 to <code>getHeight() - 1</code>.
+     * @param y the Y coordinate of the row
+     * @param argbRow receives <code>getWidth()</code> pixels
+     * @exception IOException if an I/O error occurs.
+     */
+    public void readRow(int y, int[] argbRow) throws IOException;
+
+    /**
+     * Get the rows of one image in memory.
+     * @param image source of the rows
+     * @return row source of the image
+     */
+    public static ImageRowSource of(CoffeeImage image) {
+        return new ImageRowSource() {
+            @Override
+            public int getWidth() {
+                return image.getWidth();
+            }
+
+            @Override
+            public int getHeight() {
+                return image.getHeight();
+            }
+
+            @Override
+            public void readRow(int y, int[] argbRow) {
+                image.getRGB(0, y, image.getWidth(), 1, argbRow, 0, image.getWidth());
+            }
+        };
+    }
+}
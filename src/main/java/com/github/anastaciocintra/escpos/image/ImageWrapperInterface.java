@@ -6,11 +6,28 @@ package com.github.anastaciocintra.escpos.image;
 
 
 import com.github.anastaciocintra.escpos.EscPosConst;
+import java.io.IOException;
+import java.io.OutputStream;
 
 public interface ImageWrapperInterface<T> {
         
     public byte[] getBytes(EscPosImage image);
     public T setJustification(EscPosConst.Justification justification);
 
+    /**
+     * Write the ESC/POS commands of the image directly to the outputStream.
+     * <p>
+     * Implementations should stream the header and the raster bytes, without
+     * assembling one full copy of the commands.
+     *
+     * @param image to be printed
+     * @param outputStream destination of the commands
+     * @exception IOException if an I/O error occurs.
+     * @see #getBytes(EscPosImage)
+     */
+    public default void writeTo(EscPosImage image, OutputStream outputStream) throws IOException {
+        byte[] bytes = getBytes(image);
+        outputStream.write(bytes, 0, bytes.length);
+    }
 
 }
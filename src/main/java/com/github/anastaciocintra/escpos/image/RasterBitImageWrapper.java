@@ -5,14 +5,18 @@
 package com.github.anastaciocintra.escpos.image;
 
 import com.github.anastaciocintra.escpos.EscPosConst;
+import com.github.anastaciocintra.escpos.OverrideCheck;
 import static com.github.anastaciocintra.escpos.EscPosConst.ESC;
 import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
 
 /**
  * Supply ESC/POS Raster bit Image commands.<p>
  * using <code>GS 'v' '0'</code>
  */
-public class RasterBitImageWrapper implements EscPosConst, ImageWrapperInterface{
+public class RasterBitImageWrapper implements EscPosConst, ImageWrapperInterface, RasterWrapperInterface{
     /**
      * Values for Raster Bit Image mode.
      * @see #setRasterBitImageMode(RasterBitImageMode)
@@ -33,6 +37,8 @@ public class RasterBitImageWrapper implements EscPosConst, ImageWrapperInterface
     protected RasterBitImageMode rasterBitImageMode;
 
 
+    private static final OverrideCheck GET_BYTES = new OverrideCheck(RasterBitImageWrapper.class, "getBytes", EscPosImage.class);
+
     public RasterBitImageWrapper(){
         justification = EscPosConst.Justification.Left_Default;
         rasterBitImageMode = RasterBitImageMode.Normal_Default;
@@ -77,40 +83,77 @@ public class RasterBitImageWrapper implements EscPosConst, ImageWrapperInterface
     @Override
     public byte[] getBytes(EscPosImage image) {
         ByteArrayOutputStream bytes = new ByteArrayOutputStream();
-        //
-        bytes.write(ESC);
-        bytes.write('a');
-        bytes.write(justification.value);
-        
-        //
-        bytes.write(GS);
-        bytes.write('v');
-        bytes.write('0');
-        bytes.write(rasterBitImageMode.value);
+        try {
+            writeCommands(image, bytes);
+        } catch (IOException ex) {
+            // not thrown by ByteArrayOutputStream
+            throw new UncheckedIOException(ex);
+        }
+        return bytes.toByteArray();
+    }
+
+    /**
+     * Write the Bit Image commands directly to the outputStream. <p>
+     * The raster bytes are not copied. <p>
+     * When one subclass overrides getBytes, the bytes returned by it are written.
+     *
+     * @param image to be printed
+     * @param outputStream destination of the commands
+     * @exception IOException if an I/O error occurs.
+     * @see #getBytes(EscPosImage)
+     */
+    @Override
+    public void writeTo(EscPosImage image, OutputStream outputStream) throws IOException {
+        if (GET_BYTES.isOverriddenBy(getClass())) {
+            byte[] bytes = getBytes(image);
+            outputStream.write(bytes, 0, bytes.length);
+            return;
+        }
+        writeCommands(image, outputStream);
+    }
+
+    /**
+     * Write the commands of {@link #getBytes(EscPosImage)}, used by getBytes and writeTo.
+     *
+     * @param image to be printed
+     * @param outputStream destination of the commands
+     * @exception IOException if an I/O error occurs.
+     */
+    protected void writeCommands(EscPosImage image, OutputStream outputStream) throws IOException {
+        // write raster bytes straight from the packed matrix of the image, unless customized
+        writeRaster(image.getRasterToWrite(), 0, image.getWidthOfImageInBits(), image.getHeightOfImageInBits(), outputStream);
+
+    }
+
+    /**
+     * Write the Bit Image commands of one raster directly to the outputStream.
+     *
+     * @see RasterWrapperInterface#writeRaster(byte[], int, int, int, OutputStream)
+     */
+    @Override
+    public void writeRaster(byte[] raster, int offset, int widthInBits, int heightInBits, OutputStream outputStream) throws IOException {
+        int horizontalBytes = (widthInBits + 7) / 8;
+        writeHeader(horizontalBytes, heightInBits, outputStream);
+        outputStream.write(raster, offset, horizontalBytes * heightInBits);
+    }
+
+    private void writeHeader(int horizontalBytes, int verticalBits, OutputStream outputStream) throws IOException {
         //
         //  bytes in horizontal direction for the bit image
-        int horizontalBytes = image.getHorizontalBytesOfRaster();
         int xL = horizontalBytes & 0xFF;
         int xH = (horizontalBytes & 0xFF00) >> 8 ;
         // 
         //  bits in vertical direction for the bit image
-        int verticalBits = image.getHeightOfImageInBits();
         // getting first and second bytes separatted
         int yL = verticalBits & 0xFF;
         int yH = (verticalBits & 0xFF00) >> 8 ;
-        
-        bytes.write(xL);
-        bytes.write(xH);
-        bytes.write(yL);
-        bytes.write(yH);
-        // write raster bytes
-        byte [] rasterBytes = image.getRasterBytes().toByteArray();
-        bytes.write(rasterBytes,0,rasterBytes.length);
-        
 
-        //
-        return bytes.toByteArray();
-        
+        byte[] header = {
+                ESC, 'a', (byte) justification.value,
+                GS, 'v', '0', (byte) rasterBitImageMode.value,
+                (byte) xL, (byte) xH, (byte) yL, (byte) yH
+        };
+        outputStream.write(header);
     }
     
 }
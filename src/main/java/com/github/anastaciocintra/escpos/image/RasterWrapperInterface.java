@@ -0,0 +1,30 @@
+/*
+ * Use of this source code is governed by the MIT license that can be
+ * found in the LICENSE file.
+ */
+package com.github.anastaciocintra.escpos.image;
+
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * Image wrappers that print raster bytes, used to print one image in bands.
+ * @see BandedEscPosImage
+ * @see RasterBitImageWrapper
+ * @see GraphicsImageWrapper
+ */
+public interface RasterWrapperInterface {
+
+    /**
+     * Write the ESC/POS commands of one raster image directly to the outputStream.
+     *
+     * @param raster packed rows, the most significant bit of each byte is the leftmost pixel
+     * @param offset position of the first byte on raster
+     * @param widthInBits width of the image
+     * @param heightInBits height of the image, each row has (widthInBits + 7) / 8 bytes
+     * @param outputStream destination of the commands
+     * @exception IOException if an I/O error occurs.
+     */
+    public void writeRaster(byte[] raster, int offset, int widthInBits, int heightInBits, OutputStream outputStream) throws IOException;
+
+}
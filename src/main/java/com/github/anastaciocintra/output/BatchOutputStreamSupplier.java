@@ -0,0 +1,229 @@
+/*
+ * Use of this source code is governed by the MIT license that can be
+ * found in the LICENSE file.
+ */
+package com.github.anastaciocintra.output;
+
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Writes several jobs back to back on one stream of the destination.
+ * <p>
+ * Each {@link PrinterOutputStream} creates one spooler job, with CUPS this costs
+ * latency on each receipt and fills the queue. The streams opened by this supplier
+ * are logical jobs: on <code>close()</code> its bytes are appended to the current batch,
+ * and one batch is one stream of the destination, closed after maxJobs jobs or
+ * after the window since its first job.
+ * <pre>
+ * PrintService printService = PrinterOutputStream.getPrintServiceByName("TM-T20");
+ * BatchOutputStreamSupplier batch = new BatchOutputStreamSupplier(
+ *         () -&gt; new PrinterOutputStream(printService), 20, 200);
+ * PrintJobExecutor jobExecutor = new PrintJobExecutor();
+ * ...
+ * jobExecutor.submit(receipt, batch);
+ * </pre>
+ * The streams of logical jobs are {@link DeliveryAware}, its delivery completes with
+ * the delivery of the whole batch. For this reason, callers that wait for each
+ * delivery before the next job, like one worker of {@link PrintDispatcher}, send
+ * one job by batch; use {@link PrintDispatcher#setCoalescing(int, long)} there.
+ */
+public class BatchOutputStreamSupplier implements OutputStreamSupplier, Closeable {
+
+    protected final OutputStreamSupplier destination;
+    protected final int maxJobs;
+    protected final long windowMillis;
+    private final ScheduledExecutorService timer;
+    private final Object lock = new Object();
+    private Batch current;
+
+    /**
+     * creates one instance of BatchOutputStreamSupplier.
+     *
+     * @param destination opens the stream of each batch, like one new PrinterOutputStream.
+     * @param maxJobs max number of jobs on one batch.
+     * @param windowMillis max time between the first job and the end of one batch.
+     * @exception IllegalArgumentException if maxJobs is less than 1 or windowMillis is negative.
+     */
+    public BatchOutputStreamSupplier(OutputStreamSupplier destination, int maxJobs, long windowMillis)
+            throws IllegalArgumentException {
+        if (maxJobs < 1) {
+            throw new IllegalArgumentException("maxJobs must be greater than 0");
+        }
+        if (windowMillis < 0) {
+            throw new IllegalArgumentException("windowMillis cannot be negative");
+        }
+        this.destination = destination;
+        this.maxJobs = maxJobs;
+        this.windowMillis = windowMillis;
+        this.timer = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "BatchOutputStreamSupplier");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Open one logical job.
+     *
+     * @return stream that appends its bytes to the current batch on <code>close()</code>.
+     */
+    @Override
+    public OutputStream open() {
+        return new JobOutputStream();
+    }
+
+    /**
+     * End the current batch now.
+     *
+     * @exception IOException if an I/O error occurs.
+     */
+    public void flush() throws IOException {
+        synchronized (lock) {
+            if (current != null) {
+                endBatch(current);
+            }
+        }
+    }
+
+    /**
+     * End the current batch and stop the timer.
+     *
+     * @exception IOException if an I/O error occurs.
+     */
+    @Override
+    public void close() throws IOException {
+        try {
+            flush();
+        } finally {
+            timer.shutdown();
+        }
+    }
+
+    protected void append(byte[] buf, int count, CompletableFuture<Void> delivery) throws IOException {
+        synchronized (lock) {
+            if (current == null) {
+                Batch batch = new Batch(destination.open());
+                current = batch;
+                if (windowMillis > 0) {
+                    batch.window = timer.schedule(() -> endBatchQuietly(batch), windowMillis, TimeUnit.MILLISECONDS);
+                }
+            }
+            Batch batch = current;
+            batch.deliveries.add(delivery);
+            try {
+                batch.out.write(buf, 0, count);
+            } catch (IOException | RuntimeException ex) {
+                current = null;
+                cancelWindow(batch);
+                fail(batch, ex);
+                try {
+                    batch.out.close();
+                } catch (IOException closeEx) {
+                    ex.addSuppressed(closeEx);
+                }
+                throw ex;
+            }
+            if (batch.deliveries.size() >= maxJobs || windowMillis == 0) {
+                endBatch(batch);
+            }
+        }
+    }
+
+    private void endBatchQuietly(Batch batch) {
+        synchronized (lock) {
+            try {
+                endBatch(batch);
+            } catch (IOException ex) {
+                // already on the deliveries of the batch
+            }
+        }
+    }
+
+    /**
+     * close the stream of the batch, must be called holding the lock.
+     */
+    private void endBatch(Batch batch) throws IOException {
+        if (current != batch) {
+            return;
+        }
+        current = null;
+        cancelWindow(batch);
+        try {
+            batch.out.close();
+        } catch (IOException | RuntimeException ex) {
+            fail(batch, ex);
+            throw ex;
+        }
+        if (batch.out instanceof DeliveryAware) {
+            ((DeliveryAware) batch.out).getDelivery().whenComplete((result, ex) -> {
+                if (ex != null) {
+                    fail(batch, ex);
+                } else {
+                    batch.deliveries.forEach(delivery -> delivery.complete(null));
+                }
+            });
+        } else {
+            batch.deliveries.forEach(delivery -> delivery.complete(null));
+        }
+    }
+
+    private static void cancelWindow(Batch batch) {
+        if (batch.window != null) {
+            batch.window.cancel(false);
+        }
+    }
+
+    private static void fail(Batch batch, Throwable ex) {
+        batch.deliveries.forEach(delivery -> delivery.completeExceptionally(ex));
+    }
+
+    private static class Batch {
+
+        private final OutputStream out;
+        private final List<CompletableFuture<Void>> deliveries = new ArrayList<>();
+        private ScheduledFuture<?> window;
+
+        private Batch(OutputStream out) {
+            this.out = out;
+        }
+    }
+
+    /**
+     * one logical job, buffered until <code>close()</code>.
+     */
+    protected class JobOutputStream extends ByteArrayOutputStream implements DeliveryAware {
+
+        private final CompletableFuture<Void> delivery = new CompletableFuture<>();
+        private boolean closed;
+
+        @Override
+        public CompletableFuture<Void> getDelivery() {
+            return delivery;
+        }
+
+        @Override
+        public void close() throws IOException {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            try {
+                append(buf, count, delivery);
+            } catch (IOException | RuntimeException ex) {
+                delivery.completeExceptionally(ex);
+                throw ex;
+            }
+        }
+    }
+
+}
@@ -0,0 +1,27 @@
+/*
+ * Use of this source code is governed by the MIT license that can be
+ * found in the LICENSE file.
+ */
+package com.github.anastaciocintra.output;
+
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * OutputStream that tells when its bytes were delivered to the printer.
+ * <p>
+ * Closing the stream doesn't mean the job was delivered, the bytes can still be
+ * pending on another thread. The delivery completes after that, or completes
+ * exceptionally with the transport error.
+ *
+ * @see PrintJobExecutor
+ */
+public interface DeliveryAware {
+
+    /**
+     * Get the delivery of the bytes written on this stream.
+     *
+     * @return future completed after <code>close()</code>, when all bytes were delivered.
+     */
+    CompletableFuture<Void> getDelivery();
+
+}
@@ -0,0 +1,27 @@
+/*
+ * Use of this source code is governed by the MIT license that can be
+ * found in the LICENSE file.
+ */
+package com.github.anastaciocintra.output;
+
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * Opens one OutputStream to the printer for each job.
+ * <pre>
+ * OutputStreamSupplier kitchen = () -&gt; new TcpIpOutputStream("192.168.0.10", 9100);
+ * </pre>
+ */
+@FunctionalInterface
+public interface OutputStreamSupplier {
+
+    /**
+     * Open one stream to the printer.
+     *
+     * @return stream of one job, closed by the caller.
+     * @exception IOException if an I/O error occurs.
+     */
+    OutputStream open() throws IOException;
+
+}
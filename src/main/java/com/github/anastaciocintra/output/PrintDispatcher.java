@@ -0,0 +1,722 @@
+/*
+ * Use of this source code is governed by the MIT license that can be
+ * found in the LICENSE file.
+ */
+package com.github.anastaciocintra.output;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import javax.print.PrintException;
+
+/**
+ * Dispatches jobs of many application threads to shared printers.
+ * <p>
+ * Each printer has one bounded queue with priority levels and one worker that
+ * sends one job at a time, so the bytes of different jobs are never interleaved
+ * and callers don't wait for the printer. Jobs of the same priority keep the
+ * order of submission.
+ * <p>
+ * When the queue of one printer is full, {@link OverflowPolicy} decides between
+ * rejecting the new job, blocking the caller or dropping the oldest job.
+ * <p>
+ * With {@link #setCoalescing(int, long)}, bursts of small queued jobs are sent
+ * together, with one connection and one write, and each job keeps its own future.
+ * <p>
+ * With {@link #setSpool(PrintSpool)}, jobs are saved on disk before being queued,
+ * and jobs not delivered before one restart are sent again by {@link #replaySpool()}.
+ * <pre>
+ * PrintDispatcher dispatcher = new PrintDispatcher(100, PrintDispatcher.OverflowPolicy.REJECT);
+ * dispatcher.addPrinter("kitchen", () -&gt; new TcpIpOutputStream("192.168.0.10", 9100));
+ * ...
+ * dispatcher.submit("kitchen", ticket, PrintDispatcher.Priority.HIGH);
+ * dispatcher.submit("kitchen", reprint, PrintDispatcher.Priority.LOW);
+ * </pre>
+ */
+public class PrintDispatcher implements Closeable {
+
+    /**
+     * Priority of jobs, higher priorities are sent first.
+     */
+    public enum Priority {
+        HIGH,
+        NORMAL,
+        LOW
+    }
+
+    /**
+     * What to do when the queue of one printer is full.
+     */
+    public enum OverflowPolicy {
+        /**
+         * the new job is completed exceptionally with RejectedExecutionException.
+         */
+        REJECT,
+        /**
+         * the caller waits for room on the queue.
+         */
+        BLOCK,
+        /**
+         * the oldest job with the same or lower priority is completed exceptionally
+         * with RejectedExecutionException. If there is no such job, the new one is rejected.
+         */
+        DROP_OLDEST
+    }
+
+    /**
+     * One queued job.
+     */
+    protected static class Job {
+        protected final byte[] data;
+        protected final Priority priority;
+        protected final CompletableFuture<Void> future = new CompletableFuture<>();
+        // sequence on the spool, zero when the job is not spooled
+        protected long spoolSequence;
+
+        protected Job(byte[] data, Priority priority) {
+            this.data = data;
+            this.priority = priority;
+        }
+    }
+
+    protected final int queueCapacity;
+    protected final OverflowPolicy overflowPolicy;
+    protected final ThreadFactory threadFactory;
+    protected final ConcurrentHashMap<String, PrinterQueue> printers = new ConcurrentHashMap<>();
+    protected volatile int coalesceMaxBytes;
+    protected volatile long coalesceMaxDelayNanos;
+    protected volatile PrintSpool spool;
+    protected volatile int reconnectMaxAttempts;
+    protected volatile long reconnectInitialBackoffNanos;
+    protected volatile long reconnectMaxBackoffNanos;
+    private volatile boolean closed;
+
+    /**
+     * creates one dispatcher with daemon worker threads.
+     *
+     * @param queueCapacity max number of queued jobs of each printer.
+     * @param overflowPolicy what to do when one queue is full.
+     * @exception IllegalArgumentException if queueCapacity is less than 1.
+     */
+    public PrintDispatcher(int queueCapacity, OverflowPolicy overflowPolicy) throws IllegalArgumentException {
+        this(queueCapacity, overflowPolicy, runnable -> {
+            Thread thread = new Thread(runnable);
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * creates one dispatcher.
+     *
+     * @param queueCapacity max number of queued jobs of each printer.
+     * @param overflowPolicy what to do when one queue is full.
+     * @param threadFactory creates the worker of each printer.
+     * @exception IllegalArgumentException if queueCapacity is less than 1.
+     * @see PrintThreads#virtualThreadFactory()
+     */
+    public PrintDispatcher(int queueCapacity, OverflowPolicy overflowPolicy, ThreadFactory threadFactory)
+            throws IllegalArgumentException {
+        if (queueCapacity < 1) {
+            throw new IllegalArgumentException("queueCapacity must be > 0");
+        }
+        this.queueCapacity = queueCapacity;
+        this.overflowPolicy = overflowPolicy;
+        this.threadFactory = threadFactory;
+    }
+
+    /**
+     * Set the window to coalesce queued jobs of the same printer into one write.
+     * <p>
+     * After taking one job, the worker also takes the next queued jobs while their
+     * total size fits on maxBytes, waiting up to maxDelayMillis for new jobs.
+     * The jobs are sent with one connection and one contiguous write.
+     * The first job of one burst can wait up to maxDelayMillis more.
+     * <p>
+     * With {@link #setReconnect(int, long, long)}, the jobs of one failed write are retried
+     * one by one, each on its own stream: the jobs of that write already printed are printed
+     * once more, but the next failures don't send again the whole write.
+     *
+     * @param maxBytes max size of the merged jobs, zero to disable coalescing (default).
+     * @param maxDelayMillis max time to wait for more jobs, in milliseconds.
+     * @return this object.
+     * @exception IllegalArgumentException if one value is negative.
+     */
+    public PrintDispatcher setCoalescing(int maxBytes, long maxDelayMillis) throws IllegalArgumentException {
+        if (maxBytes < 0 || maxDelayMillis < 0) {
+            throw new IllegalArgumentException("maxBytes and maxDelayMillis must be >= 0");
+        }
+        this.coalesceMaxBytes = maxBytes;
+        this.coalesceMaxDelayNanos = TimeUnit.MILLISECONDS.toNanos(maxDelayMillis);
+        return this;
+    }
+
+    /**
+     * Set automatic retries of jobs that fail with I/O errors, like one printer
+     * rebooting or one Wi-Fi drop.
+     * <p>
+     * The failed jobs are sent again from their start, on one new stream (one new connection),
+     * after one exponential backoff with jitter. Only the worker of that printer waits,
+     * and {@link #close()} stops the retries.
+     *
+     * @param maxAttempts max number of retries of each job, zero to disable (default).
+     * @param initialBackoffMillis time to wait before the first retry, doubled on each retry.
+     * @param maxBackoffMillis max time to wait between retries.
+     * @return this object.
+     * @exception IllegalArgumentException if one value is negative or initialBackoffMillis is greater than maxBackoffMillis.
+     */
+    public PrintDispatcher setReconnect(int maxAttempts, long initialBackoffMillis, long maxBackoffMillis)
+            throws IllegalArgumentException {
+        if (maxAttempts < 0 || initialBackoffMillis < 0 || maxBackoffMillis < initialBackoffMillis) {
+            throw new IllegalArgumentException("invalid reconnect values");
+        }
+        this.reconnectMaxAttempts = maxAttempts;
+        this.reconnectInitialBackoffNanos = TimeUnit.MILLISECONDS.toNanos(initialBackoffMillis);
+        this.reconnectMaxBackoffNanos = TimeUnit.MILLISECONDS.toNanos(maxBackoffMillis);
+        return this;
+    }
+
+    /**
+     * Set one spool to keep the jobs on disk until they are delivered.
+     * <p>
+     * Submitted jobs are appended to the spool before being queued, and acknowledged
+     * when delivered or rejected. Jobs that fail after all retries are discarded from the spool,
+     * jobs not sent because the dispatcher was closed stay on the spool.
+     *
+     * @param spool the spool, or null to disable.
+     * @return this object.
+     * @see #replaySpool()
+     */
+    public PrintDispatcher setSpool(PrintSpool spool) {
+        this.spool = spool;
+        return this;
+    }
+
+    /**
+     * Queue again all jobs of the spool without acknowledgment.
+     * <p>
+     * Call it once after the restart, after adding the printers and before submitting new jobs.
+     * Jobs of printers that were not added are kept on the spool.
+     *
+     * @return futures of the queued jobs.
+     * @exception IllegalStateException if there is no spool.
+     */
+    public List<CompletableFuture<Void>> replaySpool() throws IllegalStateException {
+        PrintSpool actualSpool = spool;
+        if (actualSpool == null) {
+            throw new IllegalStateException("spool is not set");
+        }
+        List<CompletableFuture<Void>> futures = new ArrayList<>();
+        for (PrintSpool.SpooledJob spooledJob : actualSpool.getPendingJobs()) {
+            PrinterQueue printer = printers.get(spooledJob.getPrinterName());
+            if (printer == null) {
+                continue;
+            }
+            Job job = new Job(spooledJob.getData(), Priority.NORMAL);
+            job.spoolSequence = spooledJob.getSequence();
+            acknowledgeOnCompletion(actualSpool, job);
+            printer.offer(job);
+            futures.add(job.future);
+        }
+        return futures;
+    }
+
+    private void acknowledgeOnCompletion(PrintSpool actualSpool, Job job) {
+        // delivered jobs are acknowledged by deliver, rejected ones here
+        job.future.whenComplete((result, ex) -> {
+            if (ex instanceof RejectedExecutionException) {
+                acknowledge(actualSpool, job);
+            }
+        });
+    }
+
+    private void acknowledge(PrintSpool actualSpool, Job job) {
+        try {
+            actualSpool.acknowledge(job.spoolSequence);
+        } catch (IOException ex) {
+            Logger.getLogger(getClass().getName()).log(Level.SEVERE, ex.getMessage(), ex);
+        }
+    }
+
+    /**
+     * discard the failed jobs from the spool, otherwise one failed job keeps all newer segments.
+     */
+    private void discard(List<Job> jobs, Throwable error) {
+        PrintSpool actualSpool = spool;
+        if (actualSpool == null) {
+            return;
+        }
+        for (Job job : jobs) {
+            if (job.spoolSequence == 0) {
+                continue;
+            }
+            Logger.getLogger(getClass().getName()).log(Level.WARNING,
+                    "discarding spooled job " + job.spoolSequence + ": " + error.getMessage());
+            try {
+                actualSpool.discard(job.spoolSequence);
+            } catch (IOException ex) {
+                Logger.getLogger(getClass().getName()).log(Level.SEVERE, ex.getMessage(), ex);
+            }
+        }
+    }
+
+    /**
+     * Add one printer and start its worker.
+     *
+     * @param printerName name used on submit.
+     * @param destination opens one stream to the printer for each job.
+     * @return this object.
+     * @exception IllegalArgumentException if the name is already in use.
+     * @exception IllegalStateException if the dispatcher is closed.
+     */
+    public PrintDispatcher addPrinter(String printerName, OutputStreamSupplier destination)
+            throws IllegalArgumentException, IllegalStateException {
+        if (closed) {
+            throw new IllegalStateException("dispatcher is closed");
+        }
+        PrinterQueue printer = new PrinterQueue(printerName, destination);
+        if (printers.putIfAbsent(printerName, printer) != null) {
+            throw new IllegalArgumentException("printer " + printerName + " already exists");
+        }
+        Thread worker = threadFactory.newThread(() -> work(printer));
+        worker.setName("PrintDispatcher-" + printerName);
+        worker.start();
+        return this;
+    }
+
+    /**
+     * Submit one job with normal priority.
+     *
+     * @param printerName name of the printer.
+     * @param job bytes of the job, must not be changed after that.
+     * @return future completed when the job is delivered.
+     * @exception IllegalArgumentException if the printer doesn't exist.
+     * @see #submit(String, byte[], Priority)
+     */
+    public CompletableFuture<Void> submit(String printerName, byte[] job) throws IllegalArgumentException {
+        return submit(printerName, job, Priority.NORMAL);
+    }
+
+    /**
+     * Submit one job.
+     * <p>
+     * Only the BLOCK policy can make the caller wait, and with one spool, the
+     * caller waits for the job to be on disk.
+     *
+     * @param printerName name of the printer.
+     * @param job bytes of the job, must not be changed after that.
+     * @param priority priority of the job.
+     * @return future completed when the job is delivered, or completed exceptionally
+     * with the transport error or with RejectedExecutionException.
+     * @exception IllegalArgumentException if the printer doesn't exist.
+     */
+    public CompletableFuture<Void> submit(String printerName, byte[] job, Priority priority) throws IllegalArgumentException {
+        Job newJob = new Job(job, priority);
+        PrinterQueue printer = getPrinter(printerName);
+        PrintSpool actualSpool = spool;
+        if (actualSpool != null) {
+            try {
+                newJob.spoolSequence = actualSpool.append(printerName, job);
+            } catch (IOException ex) {
+                newJob.future.completeExceptionally(ex);
+                return newJob.future;
+            }
+            acknowledgeOnCompletion(actualSpool, newJob);
+        }
+        if (!printer.offer(newJob) && actualSpool != null) {
+            // the caller is told the job failed, like one interrupt while blocked, it must not be replayed
+            acknowledge(actualSpool, newJob);
+        }
+        return newJob.future;
+    }
+
+    /**
+     * Get the number of jobs waiting on the queue of one printer.
+     *
+     * @param printerName name of the printer.
+     * @return number of queued jobs, without the job being sent.
+     * @exception IllegalArgumentException if the printer doesn't exist.
+     */
+    public int getQueueDepth(String printerName) throws IllegalArgumentException {
+        return getPrinter(printerName).size();
+    }
+
+    protected PrinterQueue getPrinter(String printerName) throws IllegalArgumentException {
+        PrinterQueue printer = printers.get(printerName);
+        if (printer == null) {
+            throw new IllegalArgumentException("printer " + printerName + " is not found");
+        }
+        return printer;
+    }
+
+    /**
+     * Worker loop of one printer.
+     *
+     * @param printer queue of the printer.
+     */
+    protected void work(PrinterQueue printer) {
+        List<Job> jobs;
+        while ((jobs = printer.take()) != null) {
+            deliver(printer, jobs);
+        }
+    }
+
+    /**
+     * Send jobs to the printer with one stream and one write, and complete their futures.
+     * <p>
+     * Waits for the delivery of {@link DeliveryAware} streams before the next jobs.
+     * When more jobs fail together, part of them may be printed, so they are
+     * retried one by one, each job on its own stream.
+     *
+     * @param printer queue of the printer.
+     * @param jobs one job, or more when coalescing.
+     */
+    protected void deliver(PrinterQueue printer, List<Job> jobs) {
+        deliver(printer, jobs, 0);
+    }
+
+    private void deliver(PrinterQueue printer, List<Job> jobs, int attempt) {
+        byte[] data = merge(jobs);
+        while (true) {
+            Throwable error;
+            try {
+                send(printer, data);
+                PrintSpool actualSpool = spool;
+                for (Job job : jobs) {
+                    if (actualSpool != null && job.spoolSequence != 0) {
+                        acknowledge(actualSpool, job);
+                    }
+                    job.future.complete(null);
+                }
+                return;
+            } catch (ExecutionException ex) {
+                error = ex.getCause();
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+                fail(jobs, ex);
+                return;
+            } catch (IOException | RuntimeException ex) {
+                error = ex;
+            }
+            if (attempt >= reconnectMaxAttempts || !isRetryable(error)) {
+                discard(jobs, error);
+                fail(jobs, error);
+                return;
+            }
+            if (printer.awaitClose(backoffNanos(attempt))) {
+                // closed: kept on the spool to the next replay
+                fail(jobs, error);
+                return;
+            }
+            attempt++;
+            if (jobs.size() > 1) {
+                // the next failures send again only the failed job, not the whole batch
+                for (Job job : jobs) {
+                    deliver(printer, Collections.singletonList(job), attempt);
+                }
+                return;
+            }
+        }
+    }
+
+    /**
+     * Open one stream to the printer, write the data and wait for the delivery.
+     *
+     * @param printer queue of the printer.
+     * @param data bytes of the jobs.
+     * @exception IOException if an I/O error occurs.
+     * @exception ExecutionException if the delivery of one {@link DeliveryAware} stream fails.
+     * @exception InterruptedException if the worker is interrupted.
+     */
+    protected void send(PrinterQueue printer, byte[] data) throws IOException, ExecutionException, InterruptedException {
+        OutputStream outputStream = printer.destination.open();
+        try (OutputStream out = outputStream) {
+            out.write(data);
+        }
+        if (outputStream instanceof DeliveryAware) {
+            ((DeliveryAware) outputStream).getDelivery().get();
+        }
+    }
+
+    /**
+     * Tells whether one failed delivery should be tried again.
+     *
+     * @param error the error of the delivery.
+     * @return true for I/O errors, like connection refused or reset, and print service errors.
+     */
+    protected boolean isRetryable(Throwable error) {
+        return error instanceof IOException || error instanceof PrintException;
+    }
+
+    /**
+     * Get the time to wait before the next attempt: exponential, limited by
+     * the max backoff, with random jitter of up to half of the value.
+     *
+     * @param attempt number of failed attempts minus one.
+     * @return time in nanoseconds.
+     */
+    protected long backoffNanos(int attempt) {
+        long backoff = Math.min(reconnectMaxBackoffNanos, reconnectInitialBackoffNanos << Math.min(attempt, 30));
+        if (backoff <= 1) {
+            return backoff;
+        }
+        return backoff / 2 + ThreadLocalRandom.current().nextLong(backoff / 2 + 1);
+    }
+
+    private static byte[] merge(List<Job> jobs) {
+        if (jobs.size() == 1) {
+            return jobs.get(0).data;
+        }
+        int size = 0;
+        for (Job job : jobs) {
+            size += job.data.length;
+        }
+        byte[] merged = new byte[size];
+        int pos = 0;
+        for (Job job : jobs) {
+            System.arraycopy(job.data, 0, merged, pos, job.data.length);
+            pos += job.data.length;
+        }
+        return merged;
+    }
+
+    private static void fail(List<Job> jobs, Throwable ex) {
+        for (Job job : jobs) {
+            job.future.completeExceptionally(ex);
+        }
+    }
+
+    /**
+     * Stop accepting jobs. Workers finish the queued jobs and stop.
+     */
+    @Override
+    public void close() {
+        closed = true;
+        for (PrinterQueue printer : printers.values()) {
+            printer.close();
+        }
+    }
+
+    /**
+     * Bounded priority queue of one printer.
+     */
+    protected class PrinterQueue {
+        protected final String name;
+        protected final OutputStreamSupplier destination;
+        protected final ReentrantLock lock = new ReentrantLock();
+        protected final Condition notEmpty = lock.newCondition();
+        protected final Condition notFull = lock.newCondition();
+        protected final Condition closedCondition = lock.newCondition();
+        @SuppressWarnings("unchecked")
+        protected final ArrayDeque<Job>[] levels = new ArrayDeque[Priority.values().length];
+        protected int count;
+        protected boolean queueClosed;
+
+        protected PrinterQueue(String name, OutputStreamSupplier destination) {
+            this.name = name;
+            this.destination = destination;
+            for (int i = 0; i < levels.length; i++) {
+                levels[i] = new ArrayDeque<>();
+            }
+        }
+
+        /**
+         * Queue one job, or complete it exceptionally following the overflow policy.
+         *
+         * @param job the new job.
+         * @return false if the job is not queued, its future is already completed.
+         */
+        protected boolean offer(Job job) {
+            Job dropped = null;
+            lock.lock();
+            try {
+                if (queueClosed) {
+                    job.future.completeExceptionally(new RejectedExecutionException("dispatcher is closed"));
+                    return false;
+                }
+                if (count == queueCapacity) {
+                    switch (overflowPolicy) {
+                        case BLOCK:
+                            while (count == queueCapacity && !queueClosed) {
+                                notFull.await();
+                            }
+                            if (queueClosed) {
+                                job.future.completeExceptionally(new RejectedExecutionException("dispatcher is closed"));
+                                return false;
+                            }
+                            break;
+                        case DROP_OLDEST:
+                            dropped = pollLowest(job.priority);
+                            if (dropped == null) {
+                                job.future.completeExceptionally(new RejectedExecutionException("queue of " + name + " is full"));
+                                return false;
+                            }
+                            break;
+                        default:
+                            job.future.completeExceptionally(new RejectedExecutionException("queue of " + name + " is full"));
+                            return false;
+                    }
+                }
+                levels[job.priority.ordinal()].add(job);
+                count++;
+                notEmpty.signal();
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+                job.future.completeExceptionally(ex);
+                return false;
+            } finally {
+                lock.unlock();
+            }
+            if (dropped != null) {
+                dropped.future.completeExceptionally(new RejectedExecutionException("dropped, queue of " + name + " is full"));
+            }
+            return true;
+        }
+
+        private Job pollLowest(Priority priority) {
+            for (int i = levels.length - 1; i >= priority.ordinal(); i--) {
+                if (!levels[i].isEmpty()) {
+                    count--;
+                    return levels[i].poll();
+                }
+            }
+            return null;
+        }
+
+        /**
+         * Wait for the next job, and take the next jobs within the coalescing window.
+         *
+         * @return jobs in order of priority, or null when closed and empty.
+         */
+        protected List<Job> take() {
+            lock.lock();
+            try {
+                while (count == 0) {
+                    if (queueClosed) {
+                        return null;
+                    }
+                    notEmpty.awaitUninterruptibly();
+                }
+                Job first = poll();
+                int maxBytes = coalesceMaxBytes;
+                if (maxBytes == 0) {
+                    return Collections.singletonList(first);
+                }
+                List<Job> jobs = new ArrayList<>();
+                jobs.add(first);
+                int bytes = first.data.length;
+                long deadline = System.nanoTime() + coalesceMaxDelayNanos;
+                while (true) {
+                    if (count == 0) {
+                        long remaining = deadline - System.nanoTime();
+                        if (queueClosed || remaining <= 0) {
+                            break;
+                        }
+                        try {
+                            notEmpty.awaitNanos(remaining);
+                        } catch (InterruptedException ex) {
+                            Thread.currentThread().interrupt();
+                            break;
+                        }
+                        continue;
+                    }
+                    Job next = peek();
+                    if (bytes + next.data.length > maxBytes) {
+                        break;
+                    }
+                    jobs.add(poll());
+                    bytes += next.data.length;
+                }
+                return jobs;
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        private Job peek() {
+            for (ArrayDeque<Job> level : levels) {
+                if (!level.isEmpty()) {
+                    return level.peek();
+                }
+            }
+            return null;
+        }
+
+        /**
+         * Get the next job without waiting, called with the lock held.
+         *
+         * @return the job with highest priority, or null if empty.
+         */
+        protected Job poll() {
+            for (ArrayDeque<Job> level : levels) {
+                if (!level.isEmpty()) {
+                    count--;
+                    notFull.signal();
+                    return level.poll();
+                }
+            }
+            return null;
+        }
+
+        protected int size() {
+            lock.lock();
+            try {
+                return count;
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        /**
+         * Wait for one time or until the dispatcher is closed.
+         *
+         * @param nanos time to wait.
+         * @return true if closed.
+         */
+        protected boolean awaitClose(long nanos) {
+            lock.lock();
+            try {
+                long remaining = nanos;
+                while (!queueClosed && remaining > 0) {
+                    try {
+                        remaining = closedCondition.awaitNanos(remaining);
+                    } catch (InterruptedException ex) {
+                        Thread.currentThread().interrupt();
+                        return true;
+                    }
+                }
+                return queueClosed;
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        protected void close() {
+            lock.lock();
+            try {
+                queueClosed = true;
+                notEmpty.signalAll();
+                notFull.signalAll();
+                closedCondition.signalAll();
+            } finally {
+                lock.unlock();
+            }
+        }
+    }
+
+}
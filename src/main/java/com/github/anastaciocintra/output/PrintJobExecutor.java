@@ -0,0 +1,112 @@
+/*
+ * Use of this source code is governed by the MIT license that can be
+ * found in the LICENSE file.
+ */
+package com.github.anastaciocintra.output;
+
+import java.io.Closeable;
+import java.io.OutputStream;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+
+/**
+ * Sends finished jobs to printers without blocking the caller.
+ * <p>
+ * Each job is written to one new stream of the destination by the executor,
+ * and the returned future completes when the bytes are delivered: for
+ * {@link DeliveryAware} streams, like {@link TcpIpOutputStream} and
+ * {@link PrinterOutputStream}, after the print thread has sent them,
+ * for other streams after <code>close()</code>.
+ * Transport errors complete the future exceptionally instead of reaching
+ * only one <code>UncaughtExceptionHandler</code>.
+ * <pre>
+ * PrintJobExecutor jobExecutor = new PrintJobExecutor();
+ * OutputStreamSupplier kitchen = () -&gt; new TcpIpOutputStream("192.168.0.10", 9100);
+ * ...
+ * byte[] receipt = template.render(values);
+ * jobExecutor.submit(receipt, kitchen)
+ *         .exceptionally(ex -&gt; { ... });
+ * </pre>
+ */
+public class PrintJobExecutor implements Closeable {
+
+    protected final Executor executor;
+    private final ExecutorService ownExecutor;
+
+    /**
+     * creates one instance with its own pool of daemon threads.
+     * <p>
+     * The pool is shut down by {@link #close()}.
+     */
+    public PrintJobExecutor() {
+        this.ownExecutor = Executors.newCachedThreadPool(runnable -> {
+            Thread thread = new Thread(runnable, "PrintJobExecutor");
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.executor = ownExecutor;
+    }
+
+    /**
+     * creates one instance that writes the jobs on executor.
+     *
+     * @param executor runs the writes, like one pool of virtual threads.
+     */
+    public PrintJobExecutor(Executor executor) {
+        this.executor = executor;
+        this.ownExecutor = null;
+    }
+
+    /**
+     * Submit one finished job.
+     *
+     * @param job bytes of the job, must not be changed after that.
+     * @param destination opens the stream to the printer.
+     * @return future completed when the job is delivered, or completed exceptionally with the transport error.
+     */
+    public CompletableFuture<Void> submit(byte[] job, OutputStreamSupplier destination) {
+        CompletableFuture<Void> future = new CompletableFuture<>();
+        try {
+            executor.execute(() -> send(job, destination, future));
+        } catch (RejectedExecutionException ex) {
+            future.completeExceptionally(ex);
+        }
+        return future;
+    }
+
+    protected void send(byte[] job, OutputStreamSupplier destination, CompletableFuture<Void> future) {
+        try {
+            OutputStream outputStream = destination.open();
+            try (OutputStream out = outputStream) {
+                out.write(job);
+            }
+            if (outputStream instanceof DeliveryAware) {
+                ((DeliveryAware) outputStream).getDelivery().whenComplete((result, ex) -> {
+                    if (ex != null) {
+                        future.completeExceptionally(ex);
+                    } else {
+                        future.complete(null);
+                    }
+                });
+            } else {
+                future.complete(null);
+            }
+        } catch (Exception ex) {
+            future.completeExceptionally(ex);
+        }
+    }
+
+    /**
+     * Shut down the own pool of threads, after the submitted jobs.
+     */
+    @Override
+    public void close() {
+        if (ownExecutor != null) {
+            ownExecutor.shutdown();
+        }
+    }
+
+}
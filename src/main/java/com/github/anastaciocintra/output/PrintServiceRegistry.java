@@ -0,0 +1,211 @@
+/*
+ * Use of this source code is governed by the MIT license that can be
+ * found in the LICENSE file.
+ */
+package com.github.anastaciocintra.output;
+
+import java.awt.print.PrinterJob;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+import javax.print.PrintService;
+
+/**
+ * Cached index of the print services of the system.
+ * <p>
+ * Looking up the print services is slow, with CUPS and many queues it takes
+ * tens to hundreds of milliseconds. This registry keeps one snapshot of the
+ * services with its names indexed, so finding one printer by name is one map lookup.
+ * The snapshot is refreshed after the refresh interval, and when one name
+ * is not found, to detect printers added after the last refresh.
+ * <pre>
+ * PrintService printService = PrintServiceRegistry.getDefault().getPrintServiceByName("TM-T20");
+ * </pre>
+ */
+public class PrintServiceRegistry {
+
+    public static final long DEFAULT_REFRESH_INTERVAL = 60000;
+    /**
+     * min time between two refreshes caused by names not found.
+     */
+    public static final long MIN_REFRESH_INTERVAL = 1000;
+
+    private static final PrintServiceRegistry defaultRegistry = new PrintServiceRegistry();
+
+    protected final Supplier<PrintService[]> lookup;
+    protected volatile long refreshIntervalNanos = TimeUnit.MILLISECONDS.toNanos(DEFAULT_REFRESH_INTERVAL);
+    protected volatile Snapshot snapshot;
+
+    /**
+     * creates one registry of the print services of the system.
+     */
+    public PrintServiceRegistry() {
+        this(PrinterJob::lookupPrintServices);
+    }
+
+    /**
+     * creates one registry of the print services returned by lookup.
+     *
+     * @param lookup returns all print services, called on each refresh.
+     */
+    public PrintServiceRegistry(Supplier<PrintService[]> lookup) {
+        this.lookup = lookup;
+    }
+
+    /**
+     * Get the registry shared by {@link PrinterOutputStream}.
+     *
+     * @return shared instance.
+     */
+    public static PrintServiceRegistry getDefault() {
+        return defaultRegistry;
+    }
+
+    /**
+     * Set the max age of the cached print services.
+     *
+     * @param refreshInterval time in milliseconds, zero to look up on each call. Default value is 60000
+     * @return this object.
+     * @exception IllegalArgumentException if refreshInterval is negative.
+     */
+    public PrintServiceRegistry setRefreshInterval(long refreshInterval) throws IllegalArgumentException {
+        if (refreshInterval < 0) {
+            throw new IllegalArgumentException("refreshInterval cannot be negative");
+        }
+        this.refreshIntervalNanos = TimeUnit.MILLISECONDS.toNanos(refreshInterval);
+        return this;
+    }
+
+    /**
+     * Look up the print services again.
+     */
+    public void refresh() {
+        snapshot = new Snapshot(lookup.get(), System.nanoTime());
+    }
+
+    /**
+     * Get all print services.
+     *
+     * @return print services of the current snapshot.
+     */
+    public PrintService[] getPrintServices() {
+        return currentSnapshot().services.clone();
+    }
+
+    /**
+     * Get the name of all printers.
+     *
+     * @return list of printers names.
+     */
+    public String[] getPrintServicesNames() {
+        return currentSnapshot().names.clone();
+    }
+
+    /**
+     * Get print having its name equal, equal ignoring case, or containing the passed string,
+     * in this order.
+     *
+     * @param printServiceName name of the printer to find.
+     * @return found printer.
+     * @exception IllegalArgumentException if no printer is found.
+     */
+    public PrintService getPrintServiceByName(String printServiceName) throws IllegalArgumentException {
+        Snapshot actual = currentSnapshot();
+        Optional<PrintService> found = actual.find(printServiceName);
+        if (!found.isPresent() && System.nanoTime() - actual.created >= TimeUnit.MILLISECONDS.toNanos(MIN_REFRESH_INTERVAL)) {
+            // one printer added after the last refresh
+            synchronized (this) {
+                if (snapshot == actual) {
+                    refresh();
+                }
+            }
+            found = snapshot.find(printServiceName);
+        }
+        if (!found.isPresent()) {
+            throw new IllegalArgumentException("printServiceName is not found");
+        }
+        return found.get();
+    }
+
+    protected Snapshot currentSnapshot() {
+        Snapshot actual = snapshot;
+        if (actual == null || System.nanoTime() - actual.created >= refreshIntervalNanos) {
+            synchronized (this) {
+                actual = snapshot;
+                if (actual == null || System.nanoTime() - actual.created >= refreshIntervalNanos) {
+                    refresh();
+                    actual = snapshot;
+                }
+            }
+        }
+        return actual;
+    }
+
+    /**
+     * same result of <code>String.compareToIgnoreCase</code> == 0 on equal keys.
+     */
+    static String foldCase(String name) {
+        char[] chars = name.toCharArray();
+        for (int i = 0; i < chars.length; i++) {
+            chars[i] = Character.toLowerCase(Character.toUpperCase(chars[i]));
+        }
+        return new String(chars);
+    }
+
+    /**
+     * Immutable list of print services with its name indexes.
+     */
+    protected static class Snapshot {
+
+        protected final PrintService[] services;
+        protected final String[] names;
+        protected final String[] lowerCaseNames;
+        protected final long created;
+        protected final Map<String, PrintService> byName = new HashMap<>();
+        protected final Map<String, PrintService> byFoldedName = new HashMap<>();
+        /**
+         * found results of the searches by part of the name.
+         */
+        protected final Map<String, PrintService> byPartOfName = new ConcurrentHashMap<>();
+
+        protected Snapshot(PrintService[] services, long created) {
+            this.services = services;
+            this.created = created;
+            names = new String[services.length];
+            lowerCaseNames = new String[services.length];
+            for (int i = 0; i < services.length; i++) {
+                names[i] = services[i].getName();
+                lowerCaseNames[i] = names[i].toLowerCase();
+                // the first one wins, like on the sequential search
+                byName.putIfAbsent(names[i], services[i]);
+                byFoldedName.putIfAbsent(foldCase(names[i]), services[i]);
+            }
+        }
+
+        protected Optional<PrintService> find(String printServiceName) {
+            PrintService found = byName.get(printServiceName);
+            if (found == null) {
+                found = byFoldedName.get(foldCase(printServiceName));
+            }
+            if (found != null) {
+                return Optional.of(found);
+            }
+            String part = printServiceName.toLowerCase();
+            found = byPartOfName.get(part);
+            if (found == null) {
+                for (int i = 0; i < services.length; i++) {
+                    if (lowerCaseNames[i].contains(part)) {
+                        found = services[i];
+                        byPartOfName.put(part, found);
+                        break;
+                    }
+                }
+            }
+            return Optional.ofNullable(found);
+        }
+    }
+
+}
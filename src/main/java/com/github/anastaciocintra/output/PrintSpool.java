@@ -0,0 +1,495 @@
+/*
+ * Use of this source code is governed by the MIT license that can be
+ * found in the LICENSE file.
+ */
+package com.github.anastaciocintra.output;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.zip.CRC32;
+
+/**
+ * Crash-safe spool of print jobs on one memory-mapped journal.
+ * <p>
+ * Finished jobs are appended to segment files of one directory, and acknowledged
+ * after delivery. After one restart, the jobs without acknowledgment are
+ * returned by {@link #getPendingJobs()} to be delivered again.
+ * <p>
+ * Each record has one CRC32, so one record partially written by one crash is
+ * discarded with everything after it. {@link #append(String, byte[])} returns
+ * only after the record is forced to the disk, but concurrent appends are forced
+ * together by one committer thread (group commit), without one fsync per job.
+ * Segments are deleted when all their jobs and the jobs of all older
+ * segments are acknowledged or discarded.
+ * <p>
+ * Record format: length (int), crc (int), type (byte), sequence (long), then,
+ * for jobs, the printer name (short length and UTF-8 bytes) and the job bytes.
+ * One length of zero marks the end of one segment.
+ *
+ * @see PrintDispatcher#setSpool(PrintSpool)
+ */
+public class PrintSpool implements Closeable {
+
+    /**
+     * Default size of each segment file.
+     */
+    public static final int DEFAULT_SEGMENT_SIZE = 16 * 1024 * 1024;
+
+    private static final byte JOB = 1;
+    private static final byte ACK = 2;
+    private static final byte DISCARD = 3;
+    private static final int HEADER_SIZE = 4 + 4 + 1 + 8;
+    private static final String PREFIX = "segment-";
+    private static final String SUFFIX = ".journal";
+
+    /**
+     * One job read from the spool.
+     */
+    public static class SpooledJob {
+        protected final long sequence;
+        protected final String printerName;
+        protected final byte[] data;
+
+        protected SpooledJob(long sequence, String printerName, byte[] data) {
+            this.sequence = sequence;
+            this.printerName = printerName;
+            this.data = data;
+        }
+
+        public long getSequence() {
+            return sequence;
+        }
+
+        public String getPrinterName() {
+            return printerName;
+        }
+
+        public byte[] getData() {
+            return data;
+        }
+    }
+
+    /**
+     * One segment file.
+     */
+    protected static class Segment {
+        protected final long index;
+        protected final Path path;
+        protected final FileChannel channel;
+        protected final MappedByteBuffer buffer;
+        protected int position;
+        protected int pendingJobs;
+
+        protected Segment(long index, Path path, int size) throws IOException {
+            this.index = index;
+            this.path = path;
+            this.channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+            try {
+                this.buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, Math.max(size, channel.size()));
+            } catch (IOException | RuntimeException ex) {
+                channel.close();
+                throw ex;
+            }
+        }
+    }
+
+    /**
+     * Position of one job on one segment.
+     */
+    protected static class Location {
+        protected final Segment segment;
+        protected final int offset;
+        protected final int length;
+
+        protected Location(Segment segment, int offset, int length) {
+            this.segment = segment;
+            this.offset = offset;
+            this.length = length;
+        }
+    }
+
+    protected final Path directory;
+    protected final int segmentSize;
+    protected final ArrayDeque<Segment> segments = new ArrayDeque<>();
+    protected final TreeMap<Long, Location> pending = new TreeMap<>();
+    protected final ReentrantLock lock = new ReentrantLock();
+    private final Condition commitRequested = lock.newCondition();
+    private final Condition committedCondition = lock.newCondition();
+    private final Set<Segment> dirty = new LinkedHashSet<>();
+    private final Thread committer;
+    private long nextSequence = 1;
+    private long appended;
+    private long committed;
+    private IOException commitError;
+    private boolean closed;
+
+    /**
+     * Open or create one spool with default segment size.
+     *
+     * @param directory directory of the segment files, created if needed.
+     * @exception IOException if an I/O error occurs.
+     */
+    public PrintSpool(Path directory) throws IOException {
+        this(directory, DEFAULT_SEGMENT_SIZE);
+    }
+
+    /**
+     * Open or create one spool.
+     * <p>
+     * Existing segments are read to find the jobs without acknowledgment.
+     *
+     * @param directory directory of the segment files, created if needed.
+     * @param segmentSize size of each segment file, jobs bigger than that have their own segment.
+     * @exception IOException if an I/O error occurs.
+     * @exception IllegalArgumentException if segmentSize is too small.
+     */
+    public PrintSpool(Path directory, int segmentSize) throws IOException, IllegalArgumentException {
+        if (segmentSize < 1024) {
+            throw new IllegalArgumentException("segmentSize must be >= 1024");
+        }
+        this.directory = directory;
+        this.segmentSize = segmentSize;
+        Files.createDirectories(directory);
+        try {
+            recover();
+        } catch (IOException | RuntimeException ex) {
+            closeSegments();
+            throw ex;
+        }
+        committer = new Thread(this::commitLoop, "PrintSpool-committer");
+        committer.setDaemon(true);
+        committer.start();
+    }
+
+    private void recover() throws IOException {
+        List<Path> paths = new ArrayList<>();
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory, PREFIX + "*" + SUFFIX)) {
+            for (Path path : stream) {
+                paths.add(path);
+            }
+        }
+        Collections.sort(paths);
+        for (Path path : paths) {
+            String name = path.getFileName().toString();
+            long index = Long.parseLong(name.substring(PREFIX.length(), name.length() - SUFFIX.length()));
+            Segment segment = new Segment(index, path, 0);
+            segments.add(segment);
+            scan(segment);
+        }
+        Segment last = segments.peekLast();
+        if (last != null) {
+            // discard the rest of one record torn by one crash
+            ByteBuffer tail = last.buffer.duplicate();
+            tail.position(last.position);
+            while (tail.hasRemaining()) {
+                tail.put((byte) 0);
+            }
+            last.buffer.force();
+        }
+        compact();
+    }
+
+    private void scan(Segment segment) {
+        ByteBuffer buffer = segment.buffer;
+        int pos = 0;
+        CRC32 crc = new CRC32();
+        while (pos + HEADER_SIZE <= buffer.capacity()) {
+            int length = buffer.getInt(pos);
+            if (length < HEADER_SIZE || length > buffer.capacity() - pos) {
+                break;
+            }
+            ByteBuffer content = buffer.duplicate();
+            content.position(pos + 8).limit(pos + length);
+            crc.reset();
+            crc.update(content);
+            if ((int) crc.getValue() != buffer.getInt(pos + 4)) {
+                break;
+            }
+            byte type = buffer.get(pos + 8);
+            long sequence = buffer.getLong(pos + 9);
+            if (type == JOB) {
+                pending.put(sequence, new Location(segment, pos + HEADER_SIZE, length - HEADER_SIZE));
+                segment.pendingJobs++;
+            } else if (type == ACK || type == DISCARD) {
+                Location location = pending.remove(sequence);
+                if (location != null) {
+                    location.segment.pendingJobs--;
+                }
+            }
+            nextSequence = Math.max(nextSequence, sequence + 1);
+            pos += length;
+        }
+        segment.position = pos;
+    }
+
+    /**
+     * Append one job, returning after it is on the disk.
+     *
+     * @param printerName name of the destination printer.
+     * @param job bytes of the job.
+     * @return sequence of the job, used to acknowledge it.
+     * @exception IOException if an I/O error occurs or the spool is closed.
+     */
+    public long append(String printerName, byte[] job) throws IOException {
+        byte[] name = printerName.getBytes(StandardCharsets.UTF_8);
+        if (name.length > Short.MAX_VALUE) {
+            throw new IllegalArgumentException("printerName is too long");
+        }
+        int length = HEADER_SIZE + 2 + name.length + job.length;
+        lock.lock();
+        try {
+            checkOpen();
+            long sequence = nextSequence++;
+            Segment segment = segmentFor(length);
+            int offset = segment.position;
+            ByteBuffer record = segment.buffer.duplicate();
+            record.position(offset + 8);
+            record.put(JOB).putLong(sequence).putShort((short) name.length).put(name).put(job);
+            writeHeader(segment, offset, length);
+            segment.pendingJobs++;
+            pending.put(sequence, new Location(segment, offset + HEADER_SIZE, length - HEADER_SIZE));
+            long ticket = requestCommit(segment);
+            while (committed < ticket && commitError == null) {
+                committedCondition.awaitUninterruptibly();
+            }
+            if (commitError != null) {
+                throw commitError;
+            }
+            return sequence;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Acknowledge one delivered job.
+     * <p>
+     * The acknowledgment is not forced to the disk: after one crash, the job can be delivered again.
+     *
+     * @param sequence returned by append.
+     * @exception IOException if an I/O error occurs or the spool is closed.
+     */
+    public void acknowledge(long sequence) throws IOException {
+        remove(ACK, sequence);
+    }
+
+    /**
+     * Discard one job that will not be delivered, like one job that failed after all retries.
+     * <p>
+     * The job is not returned by {@link #getPendingJobs()} anymore, so it doesn't
+     * keep its segment, and all newer segments, on the disk.
+     *
+     * @param sequence returned by append.
+     * @exception IOException if an I/O error occurs or the spool is closed.
+     */
+    public void discard(long sequence) throws IOException {
+        remove(DISCARD, sequence);
+    }
+
+    private void remove(byte type, long sequence) throws IOException {
+        lock.lock();
+        try {
+            checkOpen();
+            if (!pending.containsKey(sequence)) {
+                return;
+            }
+            // before removing the job, segmentFor can fail
+            Segment segment = segmentFor(HEADER_SIZE);
+            Location location = pending.remove(sequence);
+            ByteBuffer record = segment.buffer.duplicate();
+            record.position(segment.position + 8);
+            record.put(type).putLong(sequence);
+            writeHeader(segment, segment.position, HEADER_SIZE);
+            requestCommit(segment);
+            location.segment.pendingJobs--;
+            compact();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Get all jobs without acknowledgment, in order of append.
+     *
+     * @return pending jobs.
+     */
+    public List<SpooledJob> getPendingJobs() {
+        lock.lock();
+        try {
+            List<SpooledJob> jobs = new ArrayList<>(pending.size());
+            for (Map.Entry<Long, Location> entry : pending.entrySet()) {
+                Location location = entry.getValue();
+                ByteBuffer payload = location.segment.buffer.duplicate();
+                payload.position(location.offset).limit(location.offset + location.length);
+                byte[] name = new byte[payload.getShort()];
+                payload.get(name);
+                byte[] data = new byte[payload.remaining()];
+                payload.get(data);
+                jobs.add(new SpooledJob(entry.getKey(), new String(name, StandardCharsets.UTF_8), data));
+            }
+            return jobs;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Get the number of jobs without acknowledgment.
+     *
+     * @return number of pending jobs.
+     */
+    public int getPendingCount() {
+        lock.lock();
+        try {
+            return pending.size();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void checkOpen() throws IOException {
+        if (closed) {
+            throw new IOException("spool is closed");
+        }
+    }
+
+    private void writeHeader(Segment segment, int offset, int length) {
+        ByteBuffer content = segment.buffer.duplicate();
+        content.position(offset + 8).limit(offset + length);
+        CRC32 crc = new CRC32();
+        crc.update(content);
+        segment.buffer.putInt(offset + 4, (int) crc.getValue());
+        // length is written last, the record is valid only after that
+        segment.buffer.putInt(offset, length);
+        segment.position = offset + length;
+    }
+
+    private Segment segmentFor(int length) throws IOException {
+        Segment current = segments.peekLast();
+        // room for the record and for the end mark
+        if (current != null && current.position + length + 4 <= current.buffer.capacity()) {
+            return current;
+        }
+        long index = current == null ? 0 : current.index + 1;
+        Path path = directory.resolve(String.format("%s%016d%s", PREFIX, index, SUFFIX));
+        Segment segment = new Segment(index, path, Math.max(segmentSize, length + 4));
+        segments.add(segment);
+        return segment;
+    }
+
+    private long requestCommit(Segment segment) {
+        dirty.add(segment);
+        appended++;
+        commitRequested.signal();
+        return appended;
+    }
+
+    /**
+     * Delete the oldest segments without pending jobs.
+     */
+    private void compact() {
+        while (segments.size() > 1 && segments.peekFirst().pendingJobs == 0) {
+            Segment segment = segments.peekFirst();
+            try {
+                segment.channel.close();
+                Files.deleteIfExists(segment.path);
+            } catch (IOException ex) {
+                // mapped files cannot be deleted on some systems, try again on the next compaction
+                Logger.getLogger(getClass().getName()).log(Level.FINE, ex.getMessage(), ex);
+                return;
+            }
+            segments.pollFirst();
+            dirty.remove(segment);
+        }
+    }
+
+    private void commitLoop() {
+        lock.lock();
+        try {
+            while (true) {
+                while (appended == committed && !closed) {
+                    commitRequested.awaitUninterruptibly();
+                }
+                if (appended == committed) {
+                    return;
+                }
+                long target = appended;
+                List<Segment> toForce = new ArrayList<>(dirty);
+                dirty.clear();
+                RuntimeException error = null;
+                lock.unlock();
+                try {
+                    // appends during this force are committed by the next one
+                    for (Segment segment : toForce) {
+                        segment.buffer.force();
+                    }
+                } catch (RuntimeException ex) {
+                    error = ex;
+                } finally {
+                    lock.lock();
+                }
+                if (error != null) {
+                    commitError = new IOException("spool commit failed", error);
+                }
+                committed = target;
+                committedCondition.signalAll();
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void closeSegments() {
+        for (Segment segment : segments) {
+            try {
+                segment.channel.close();
+            } catch (IOException ex) {
+                Logger.getLogger(getClass().getName()).log(Level.FINE, ex.getMessage(), ex);
+            }
+        }
+    }
+
+    /**
+     * Commit the pending records and close the segment files.
+     */
+    @Override
+    public void close() {
+        lock.lock();
+        try {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            commitRequested.signal();
+        } finally {
+            lock.unlock();
+        }
+        try {
+            committer.join();
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        }
+        closeSegments();
+    }
+
+}
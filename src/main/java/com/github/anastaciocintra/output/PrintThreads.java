@@ -0,0 +1,54 @@
+/*
+ * Use of this source code is governed by the MIT license that can be
+ * found in the LICENSE file.
+ */
+package com.github.anastaciocintra.output;
+
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * Thread factories for the print threads of output streams.
+ * <p>
+ * The print thread of {@link TcpIpOutputStream} and {@link PrinterOutputStream}
+ * spends almost all of its time blocked on printer I/O. On Java 21 or newer,
+ * {@link #virtualThreadFactory()} creates virtual threads, so thousands of concurrent
+ * jobs don't need thousands of platform threads. This class has one version
+ * for Java 21 on the multi-release jar.
+ * <p>
+ * Virtual threads don't keep the JVM alive, wait for the end of the job before exit.
+ */
+public final class PrintThreads {
+
+    private static final ThreadFactory platformThreadFactory = Thread::new;
+
+    private PrintThreads() {
+    }
+
+    /**
+     * Tells whether this runtime supports virtual threads.
+     *
+     * @return true on Java 21 or newer.
+     */
+    public static boolean isVirtualThreadSupported() {
+        return false;
+    }
+
+    /**
+     * Get the factory of platform threads, the default of output streams.
+     *
+     * @return factory equivalent to <code>new Thread(runnable)</code>.
+     */
+    public static ThreadFactory platformThreadFactory() {
+        return platformThreadFactory;
+    }
+
+    /**
+     * Get one factory of virtual threads.
+     *
+     * @return factory of virtual threads, or of platform threads before Java 21.
+     */
+    public static ThreadFactory virtualThreadFactory() {
+        return platformThreadFactory;
+    }
+
+}
@@ -4,11 +4,11 @@
  */
 package com.github.anastaciocintra.output;
 
-import java.awt.print.PrinterJob;
 import java.io.IOException;
-import java.io.PipedInputStream;
-import java.io.PipedOutputStream;
 import java.lang.Thread.UncaughtExceptionHandler;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ThreadFactory;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 import javax.print.Doc;
@@ -26,10 +26,16 @@ import javax.print.SimpleDoc;
  * be reused and the last command should be <code>close()</code>, after that,
  * you need to create another instance to send data to the printer.
  */
-public class PrinterOutputStream extends PipedOutputStream {
+public class PrinterOutputStream extends RingBufferOutputStream implements DeliveryAware {
 
-    protected final PipedInputStream pipedInputStream;
+    /**
+     * print thread, null when the print task runs on one Executor.
+     */
     protected final Thread threadPrint;
+    protected final CompletableFuture<Void> delivery = new CompletableFuture<>();
+    protected volatile UncaughtExceptionHandler uncaughtException = (Thread t, Throwable e) -> {
+        Logger.getLogger(this.getClass().getName()).log(Level.SEVERE, e.getMessage(),e);
+    };
 
     /**
      * creates one instance of PrinterOutputStream.
@@ -43,29 +49,74 @@ public class PrinterOutputStream extends PipedOutputStream {
      * @see #getDefaultPrintService()
      */
     public PrinterOutputStream(PrintService printService) throws IOException {
+        this(printService, DEFAULT_CAPACITY);
+    }
 
-        UncaughtExceptionHandler uncaughtException = (Thread t, Throwable e) -> {
-            Logger.getLogger(this.getClass().getName()).log(Level.SEVERE, e.getMessage(),e);
-        };
+    /**
+     * creates one instance of PrinterOutputStream.
+     * <p>
+     * Writes wait for the print job only when capacity bytes are pending.
+     *
+     * @param printService value used to create the printer job
+     * @param capacity size of the ring buffer between the caller and the print thread.
+     * @exception IOException if an I/O error occurs.
+     * @see RingBufferOutputStream
+     */
+    public PrinterOutputStream(PrintService printService, int capacity) throws IOException {
+        this(printService, capacity, PrintThreads.platformThreadFactory());
+    }
 
-        pipedInputStream = new PipedInputStream();
-        super.connect(pipedInputStream);
+    /**
+     * creates one instance of PrinterOutputStream with the print thread created by threadFactory.
+     *
+     * @param printService value used to create the printer job
+     * @param capacity size of the ring buffer between the caller and the print thread.
+     * @param threadFactory creates the print thread.
+     * @exception IOException if an I/O error occurs.
+     * @see PrintThreads#virtualThreadFactory()
+     */
+    public PrinterOutputStream(PrintService printService, int capacity, ThreadFactory threadFactory) throws IOException {
+        super(capacity);
+        threadPrint = threadFactory.newThread(createRunnablePrint(printService));
+        threadPrint.start();
+    }
 
-        Runnable runnablePrint = () -> {
+    /**
+     * creates one instance of PrinterOutputStream with the print task running on executor.
+     * <p>
+     * The executor needs one thread to this instance while the job is printed.
+     *
+     * @param printService value used to create the printer job
+     * @param capacity size of the ring buffer between the caller and the print thread.
+     * @param executor runs the print task.
+     * @exception IOException if an I/O error occurs.
+     * @exception java.util.concurrent.RejectedExecutionException if the executor doesn't accept the task.
+     */
+    public PrinterOutputStream(PrintService printService, int capacity, Executor executor) throws IOException {
+        super(capacity);
+        threadPrint = null;
+        executor.execute(createRunnablePrint(printService));
+    }
+
+    private Runnable createRunnablePrint(PrintService printService) {
+        return () -> {
             try {
                 DocFlavor df = DocFlavor.INPUT_STREAM.AUTOSENSE;
-                Doc d = new SimpleDoc(pipedInputStream, df, null);
+                Doc d = new SimpleDoc(inputStream, df, null);
 
                 DocPrintJob job = printService.createPrintJob();
                 job.print(d, null);
-            } catch (PrintException ex) {
-                throw new RuntimeException(ex);
+            } catch (PrintException | RuntimeException ex) {
+                // next writes fail instead of waiting forever
+                inputStream.abort(ex);
+                delivery.completeExceptionally(ex);
+                uncaughtException.uncaughtException(Thread.currentThread(), new RuntimeException(ex));
+            } finally {
+                inputStream.close();
+                // print job has consumed all bytes
+                delivery.complete(null);
             }
         };
-
-        threadPrint = new Thread(runnablePrint);
-        threadPrint.setUncaughtExceptionHandler(uncaughtException);
-        threadPrint.start();
     }
 
     /**
@@ -79,6 +130,17 @@ public class PrinterOutputStream extends PipedOutputStream {
         this(getDefaultPrintService());
     }
 
+    /**
+     * Get the delivery of the job.
+     *
+     * @return future completed when the print service returns the job after <code>close()</code>,
+     * or completed exceptionally with the error of the print thread.
+     */
+    @Override
+    public CompletableFuture<Void> getDelivery() {
+        return delivery;
+    }
+
     /**
      * Set UncaughtExceptionHandler to make special error treatment.
      * <p>
@@ -87,21 +149,17 @@ public class PrinterOutputStream extends PipedOutputStream {
      * @param uncaughtException used on (another thread) print.
      */
     public void setUncaughtException(UncaughtExceptionHandler uncaughtException) {
-        threadPrint.setUncaughtExceptionHandler(uncaughtException);
+        this.uncaughtException = uncaughtException;
     }
 
     /**
      * Get the name of all printers on the system.
      *
      * @return list of printers names.
+     * @see PrintServiceRegistry
      */
     public static String[] getListPrintServicesNames() {
-        PrintService[] printServices = PrinterJob.lookupPrintServices();
-        String[] printServicesNames = new String[printServices.length];
-        for (int i = 0; i < printServices.length; i++) {
-            printServicesNames[i] = printServices[i].getName();
-        }
-        return printServicesNames;
+        return PrintServiceRegistry.getDefault().getPrintServicesNames();
     }
 
     /**
@@ -122,46 +180,14 @@ public class PrinterOutputStream extends PipedOutputStream {
     /**
      * Get print having its name containing the passed string.
      * <p>
-     * This call is slow, try to use it only once and reuse the PrintService
-     * variable.
+     * The print services are cached by {@link PrintServiceRegistry#getDefault()},
+     * only the first call, and the calls after its refresh interval, are slow.
      *
      * @param printServiceName name of the printer to find.
      * @return found printer;
      */
     public static PrintService getPrintServiceByName(String printServiceName) {
-        PrintService[] printServices = PrinterJob.lookupPrintServices();
-        PrintService foundService = null;
-
-        for (PrintService service : printServices) {
-            if (service.getName().compareTo(printServiceName) == 0) {
-                foundService = service;
-                break;
-            }
-        }
-        if (foundService != null) {
-            return foundService;
-        }
-
-        for (PrintService service : printServices) {
-            if (service.getName().compareToIgnoreCase(printServiceName) == 0) {
-                foundService = service;
-                break;
-            }
-        }
-        if (foundService != null) {
-            return foundService;
-        }
-
-        for (PrintService service : printServices) {
-            if (service.getName().toLowerCase().contains(printServiceName.toLowerCase())) {
-                foundService = service;
-                break;
-            }
-        }
-        if (foundService == null) {
-            throw new IllegalArgumentException("printServiceName is not found");
-        }
-        return foundService;
+        return PrintServiceRegistry.getDefault().getPrintServiceByName(printServiceName);
     }
 
 }
@@ -0,0 +1,377 @@
+/*
+ * Use of this source code is governed by the MIT license that can be
+ * found in the LICENSE file.
+ */
+package com.github.anastaciocintra.output;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Single-producer/single-consumer pipe based on one lock-free ring buffer.
+ * <p>
+ * One thread writes on this OutputStream and another thread reads from
+ * {@link #getInputStream()}. Writes and reads never block while there is
+ * space or data available on the ring, and when one side needs to wait,
+ * it is parked until the other side hands off, without timed polling.
+ * <p>
+ * Backpressure: when the ring is full, the writer waits the reader,
+ * limited by {@link #setWriteTimeout(long)}.
+ * <p>
+ * Errors are propagated in both directions: after {@link #abort(Throwable)} the reader
+ * receives IOException, and after {@link RingBufferInputStream#abort(Throwable)}
+ * or <code>close()</code> of the reader, the writer receives IOException.
+ */
+public class RingBufferOutputStream extends OutputStream {
+
+    /**
+     * Default capacity of the ring in bytes.
+     */
+    public static final int DEFAULT_CAPACITY = 64 * 1024;
+
+    protected final byte[] ring;
+    protected final int mask;
+    protected final RingBufferInputStream inputStream;
+
+    // positions only increase, written only by its own side.
+    private volatile long writePosition;
+    private volatile long readPosition;
+
+    private volatile boolean writerClosed;
+    private volatile Throwable writerFailure;
+    private volatile boolean readerClosed;
+    private volatile Throwable readerFailure;
+
+    private volatile Thread waitingWriter;
+    private volatile Thread waitingReader;
+
+    private volatile long writeTimeoutNanos;
+
+    /**
+     * creates one ring buffer with default capacity.
+     *
+     * @see #DEFAULT_CAPACITY
+     */
+    public RingBufferOutputStream() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    /**
+     * creates one ring buffer.
+     *
+     * @param capacity size of the ring in bytes, rounded up to the next power of two.
+     * @exception IllegalArgumentException if capacity is not between 1 and 2^30
+     */
+    public RingBufferOutputStream(int capacity) throws IllegalArgumentException {
+        if (capacity < 1 || capacity > (1 << 30)) {
+            throw new IllegalArgumentException("capacity must be between 1 and 2^30");
+        }
+        int size = Integer.highestOneBit(capacity);
+        if (size < capacity) {
+            size <<= 1;
+        }
+        ring = new byte[size];
+        mask = size - 1;
+        inputStream = new RingBufferInputStream();
+    }
+
+    /**
+     * Get the reader side of this pipe.
+     *
+     * @return the input stream to be used by the consumer thread.
+     */
+    public RingBufferInputStream getInputStream() {
+        return inputStream;
+    }
+
+    /**
+     * Get the capacity of the ring.
+     *
+     * @return size in bytes.
+     */
+    public int getCapacity() {
+        return ring.length;
+    }
+
+    /**
+     * Get the free space of the ring, bytes that can be written without waiting.
+     *
+     * @return free space in bytes.
+     */
+    public int getFreeSpace() {
+        return ring.length - (int) (writePosition - readPosition);
+    }
+
+    /**
+     * Set the max time to wait for free space on writes.
+     *
+     * @param writeTimeoutMillis max time in milliseconds, zero to wait forever.
+     * @return this object.
+     * @exception IllegalArgumentException if writeTimeoutMillis is negative.
+     */
+    public RingBufferOutputStream setWriteTimeout(long writeTimeoutMillis) throws IllegalArgumentException {
+        if (writeTimeoutMillis < 0) {
+            throw new IllegalArgumentException("writeTimeoutMillis must be >= 0");
+        }
+        this.writeTimeoutNanos = TimeUnit.MILLISECONDS.toNanos(writeTimeoutMillis);
+        return this;
+    }
+
+    /**
+     * Write one byte, waiting for free space when the ring is full.
+     *
+     * @param b the <code>byte</code>.
+     * @exception IOException if this stream is closed or if the reader was closed or failed.
+     * @exception InterruptedIOException if the write timeout expired or the thread was interrupted.
+     */
+    @Override
+    public void write(int b) throws IOException {
+        checkWritable();
+        long position = writePosition;
+        if (position - readPosition == ring.length) {
+            awaitSpace();
+        }
+        ring[(int) position & mask] = (byte) b;
+        writePosition = position + 1;
+        signal(waitingReader);
+    }
+
+    /**
+     * Write bytes, waiting for free space when the ring is full.
+     *
+     * @param b the data.
+     * @param off the start offset in the data.
+     * @param len the number of bytes to write.
+     * @exception IOException if this stream is closed or if the reader was closed or failed.
+     * @exception InterruptedIOException if the write timeout expired or the thread was interrupted.
+     */
+    @Override
+    public void write(byte[] b, int off, int len) throws IOException {
+        if (off < 0 || len < 0 || len > b.length - off) {
+            throw new IndexOutOfBoundsException();
+        }
+        checkWritable();
+        while (len > 0) {
+            long position = writePosition;
+            int free = ring.length - (int) (position - readPosition);
+            if (free == 0) {
+                awaitSpace();
+                continue;
+            }
+            int n = Math.min(len, free);
+            int index = (int) position & mask;
+            int first = Math.min(n, ring.length - index);
+            System.arraycopy(b, off, ring, index, first);
+            if (first < n) {
+                System.arraycopy(b, off + first, ring, 0, n - first);
+            }
+            writePosition = position + n;
+            signal(waitingReader);
+            off += n;
+            len -= n;
+        }
+    }
+
+    /**
+     * Wake up the reader if it is waiting.
+     */
+    @Override
+    public void flush() {
+        signal(waitingReader);
+    }
+
+    /**
+     * Close the writer side. The reader receives end of stream after the remaining bytes.
+     */
+    @Override
+    public void close() {
+        writerClosed = true;
+        signal(waitingReader);
+    }
+
+    /**
+     * Close the writer side with one error. The reader receives IOException with this cause,
+     * discarding the pending bytes.
+     *
+     * @param cause error of the writer.
+     */
+    public void abort(Throwable cause) {
+        writerFailure = cause;
+        close();
+    }
+
+    private void checkWritable() throws IOException {
+        if (writerClosed) {
+            throw new IOException("Pipe closed");
+        }
+        if (readerFailure != null) {
+            throw new IOException("Pipe reader failed", readerFailure);
+        }
+        if (readerClosed) {
+            throw new IOException("Pipe closed by reader");
+        }
+    }
+
+    private void awaitSpace() throws IOException {
+        long timeout = writeTimeoutNanos;
+        long deadline = System.nanoTime() + timeout;
+        waitingWriter = Thread.currentThread();
+        try {
+            while (writePosition - readPosition == ring.length) {
+                checkWritable();
+                if (timeout == 0) {
+                    LockSupport.park(this);
+                } else {
+                    long remaining = deadline - System.nanoTime();
+                    if (remaining <= 0) {
+                        throw new InterruptedIOException("write timeout, ring buffer is full");
+                    }
+                    LockSupport.parkNanos(this, remaining);
+                }
+                if (Thread.interrupted()) {
+                    throw new InterruptedIOException("interrupted while waiting for free space");
+                }
+            }
+        } finally {
+            waitingWriter = null;
+        }
+    }
+
+    private static void signal(Thread thread) {
+        if (thread != null) {
+            LockSupport.unpark(thread);
+        }
+    }
+
+    /**
+     * Reader side of the ring buffer.
+     */
+    public class RingBufferInputStream extends InputStream {
+
+        protected RingBufferInputStream() {
+        }
+
+        /**
+         * Read one byte, waiting while the ring is empty.
+         *
+         * @return the byte or -1 at the end of stream.
+         * @exception IOException if this stream is closed or if the writer failed.
+         */
+        @Override
+        public int read() throws IOException {
+            checkReadable();
+            long position = readPosition;
+            if (writePosition == position && !awaitData()) {
+                return -1;
+            }
+            int b = ring[(int) position & mask] & 0xFF;
+            readPosition = position + 1;
+            signal(waitingWriter);
+            return b;
+        }
+
+        /**
+         * Read bytes, waiting while the ring is empty.
+         *
+         * @param b destination of the data.
+         * @param off the start offset in b.
+         * @param len max number of bytes to read.
+         * @return number of bytes read or -1 at the end of stream.
+         * @exception IOException if this stream is closed or if the writer failed.
+         */
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            if (off < 0 || len < 0 || len > b.length - off) {
+                throw new IndexOutOfBoundsException();
+            }
+            if (len == 0) {
+                return 0;
+            }
+            checkReadable();
+            long position = readPosition;
+            if (writePosition == position && !awaitData()) {
+                return -1;
+            }
+            int n = (int) Math.min(len, writePosition - position);
+            int index = (int) position & mask;
+            int first = Math.min(n, ring.length - index);
+            System.arraycopy(ring, index, b, off, first);
+            if (first < n) {
+                System.arraycopy(ring, 0, b, off + first, n - first);
+            }
+            readPosition = position + n;
+            signal(waitingWriter);
+            return n;
+        }
+
+        /**
+         * Get the number of bytes that can be read without waiting.
+         *
+         * @return bytes available on the ring.
+         */
+        @Override
+        public int available() {
+            return (int) (writePosition - readPosition);
+        }
+
+        /**
+         * Close the reader side. Next writes receive IOException.
+         */
+        @Override
+        public void close() {
+            readerClosed = true;
+            signal(waitingWriter);
+        }
+
+        /**
+         * Close the reader side with one error. The writer receives IOException with this cause.
+         *
+         * @param cause error of the reader, like one error sending data to the printer.
+         */
+        public void abort(Throwable cause) {
+            readerFailure = cause;
+            close();
+        }
+
+        private void checkReadable() throws IOException {
+            if (writerFailure != null) {
+                throw new IOException("Pipe writer failed", writerFailure);
+            }
+        }
+
+        /**
+         * Wait until there is data to be read.
+         *
+         * @return false at the end of stream.
+         */
+        private boolean awaitData() throws IOException {
+            waitingReader = Thread.currentThread();
+            try {
+                while (true) {
+                    if (readerClosed) {
+                        throw new IOException("Pipe closed");
+                    }
+                    if (writePosition != readPosition) {
+                        return true;
+                    }
+                    if (writerClosed) {
+                        checkReadable();
+                        // writer closes after the last write, check the data again
+                        return writePosition != readPosition;
+                    }
+                    LockSupport.park(this);
+                    if (Thread.interrupted()) {
+                        throw new InterruptedIOException("interrupted while waiting for data");
+                    }
+                }
+            } finally {
+                waitingReader = null;
+            }
+        }
+    }
+
+}
@@ -0,0 +1,235 @@
+/*
+ * Use of this source code is governed by the MIT license that can be
+ * found in the LICENSE file.
+ */
+package com.github.anastaciocintra.output;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Supply OutputStream to the TCP/IP printer based on NIO <code>SocketChannel</code>.
+ * <p>
+ * Unlike {@link TcpIpOutputStream}, there is no extra thread: the connection is
+ * opened on the constructor, with connect timeout, and bytes are held on direct
+ * buffers until <code>flush()</code>, <code>close()</code> or until the job buffer size,
+ * then the whole job is sent with one gathered write, with write timeout.
+ * Errors are thrown to the caller.
+ * <p>
+ * The instance cannot be reused and the last command should be <code>close()</code>.
+ *
+ * @see TcpIpSettings
+ */
+public class SocketChannelOutputStream extends OutputStream implements DeliveryAware {
+
+    private static final int CHUNK_SIZE = 64 * 1024;
+
+    protected TcpIpConnection connection;
+    protected final TcpIpSettings settings;
+    protected final List<ByteBuffer> buffers = new ArrayList<>();
+    protected int usedBuffers;
+    protected int bufferedBytes;
+    protected final CompletableFuture<Void> delivery = new CompletableFuture<>();
+    private boolean closed;
+    /**
+     * some bytes of the job were already sent on the connection.
+     */
+    private boolean sent;
+
+    /**
+     * creates one instance of SocketChannelOutputStream.
+     *
+     * @param host - the IP address or host name
+     * @param port - the port number
+     * @param settings timeouts and socket options.
+     * @exception IOException if an I/O error occurs, like connect timeout.
+     */
+    public SocketChannelOutputStream(String host, int port, TcpIpSettings settings) throws IOException {
+        this(new TcpIpConnection(host, port, settings));
+    }
+
+    /**
+     * creates one instance of SocketChannelOutputStream with default settings.
+     *
+     * @param host - the IP address or host name
+     * @param port - the port number
+     * @exception IOException if an I/O error occurs, like connect timeout.
+     */
+    public SocketChannelOutputStream(String host, int port) throws IOException {
+        this(host, port, new TcpIpSettings());
+    }
+
+    /**
+     * creates one instance of SocketChannelOutputStream using default port 9100
+     *
+     * @param host - the IP address or host name
+     * @exception IOException if an I/O error occurs, like connect timeout.
+     */
+    public SocketChannelOutputStream(String host) throws IOException {
+        this(host, 9100);
+    }
+
+    /**
+     * creates one instance of SocketChannelOutputStream on one opened connection.
+     * <p>
+     * The connection is closed on <code>close()</code>.
+     *
+     * @param connection opened connection.
+     */
+    public SocketChannelOutputStream(TcpIpConnection connection) {
+        this.connection = connection;
+        this.settings = connection.getSettings();
+    }
+
+    @Override
+    public void write(int b) throws IOException {
+        currentBuffer().put((byte) b);
+        bufferedBytes++;
+        if (bufferedBytes >= settings.getJobBufferSize()) {
+            sendBuffers();
+        }
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) throws IOException {
+        if (off < 0 || len < 0 || len > b.length - off) {
+            throw new IndexOutOfBoundsException();
+        }
+        while (len > 0) {
+            ByteBuffer buffer = currentBuffer();
+            int n = Math.min(len, Math.min(buffer.remaining(), settings.getJobBufferSize() - bufferedBytes));
+            buffer.put(b, off, n);
+            bufferedBytes += n;
+            off += n;
+            len -= n;
+            if (bufferedBytes >= settings.getJobBufferSize()) {
+                sendBuffers();
+            }
+        }
+    }
+
+    private ByteBuffer currentBuffer() throws IOException {
+        if (closed) {
+            throw new IOException("Stream closed");
+        }
+        if (usedBuffers > 0 && buffers.get(usedBuffers - 1).hasRemaining()) {
+            return buffers.get(usedBuffers - 1);
+        }
+        if (usedBuffers == buffers.size()) {
+            buffers.add(ByteBuffer.allocateDirect(Math.min(CHUNK_SIZE, settings.getJobBufferSize())));
+        }
+        return buffers.get(usedBuffers++);
+    }
+
+    /**
+     * Send the held bytes with one gathered write.
+     * <p>
+     * If the connection stayed idle for longer than the idle timeout before the first
+     * bytes of the job, it is reopened. In the middle of the job, the printer may have
+     * dropped the start of the job, so the job fails and the held bytes are discarded.
+     *
+     * @exception IOException if an I/O error occurs, or if the connection stayed idle
+     * for longer than the idle timeout in the middle of the job.
+     */
+    protected void sendBuffers() throws IOException {
+        if (bufferedBytes == 0) {
+            return;
+        }
+        if (connection.isIdleExpired()) {
+            if (sent) {
+                discardBuffers();
+                IOException ex = new IOException("connection idle for longer than the idle timeout in the middle of the job");
+                delivery.completeExceptionally(ex);
+                throw ex;
+            }
+            TcpIpConnection idle = connection;
+            idle.close();
+            connection = new TcpIpConnection(idle.getHost(), idle.getPort(), settings);
+        }
+        sent = true;
+        ByteBuffer[] srcs = new ByteBuffer[usedBuffers];
+        for (int i = 0; i < usedBuffers; i++) {
+            srcs[i] = buffers.get(i);
+            srcs[i].flip();
+        }
+        try {
+            connection.write(srcs);
+        } catch (IOException | RuntimeException ex) {
+            // part of the job may be lost
+            delivery.completeExceptionally(ex);
+            throw ex;
+        } finally {
+            discardBuffers();
+        }
+    }
+
+    private void discardBuffers() {
+        for (int i = 0; i < usedBuffers; i++) {
+            buffers.get(i).clear();
+        }
+        usedBuffers = 0;
+        bufferedBytes = 0;
+    }
+
+    /**
+     * Send the held bytes to the printer.
+     *
+     * @exception IOException if an I/O error occurs.
+     */
+    @Override
+    public void flush() throws IOException {
+        if (closed) {
+            return;
+        }
+        sendBuffers();
+    }
+
+    /**
+     * Send the held bytes and close the connection.
+     *
+     * @exception IOException if an I/O error occurs.
+     */
+    @Override
+    public void close() throws IOException {
+        if (closed) {
+            return;
+        }
+        try {
+            sendBuffers();
+            delivery.complete(null);
+        } catch (IOException | RuntimeException ex) {
+            delivery.completeExceptionally(ex);
+            throw ex;
+        } finally {
+            closed = true;
+            releaseConnection();
+        }
+    }
+
+    /**
+     * Get the delivery of the job.
+     * <p>
+     * The bytes are sent by the caller thread, so it is completed by <code>close()</code>.
+     *
+     * @return future completed by <code>close()</code>.
+     */
+    @Override
+    public CompletableFuture<Void> getDelivery() {
+        return delivery;
+    }
+
+    /**
+     * Called on <code>close()</code> after sending the held bytes, closes the connection.
+     *
+     * @exception IOException if an I/O error occurs.
+     * @see TcpIpConnectionPool
+     */
+    protected void releaseConnection() throws IOException {
+        connection.close();
+    }
+
+}
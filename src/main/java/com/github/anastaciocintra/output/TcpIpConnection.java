@@ -0,0 +1,206 @@
+/*
+ * Use of this source code is governed by the MIT license that can be
+ * found in the LICENSE file.
+ */
+package com.github.anastaciocintra.output;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.SocketTimeoutException;
+import java.net.StandardSocketOptions;
+import java.net.UnknownHostException;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.SocketChannel;
+
+/**
+ * Connection to one network printer based on a non-blocking <code>SocketChannel</code>.
+ * <p>
+ * Connect and write operations wait on one selector, limited by the timeouts
+ * of {@link TcpIpSettings}, so one dead printer fails the caller instead
+ * of hanging the thread forever.
+ * <p>
+ * One connection should be used by one thread at a time.
+ */
+public class TcpIpConnection implements Closeable {
+
+    protected final String host;
+    protected final int port;
+    protected final TcpIpSettings settings;
+    protected final SocketChannel channel;
+    protected final Selector selector;
+    protected final SelectionKey selectionKey;
+    protected volatile long lastUsedNanos;
+
+    /**
+     * Open one connection to the printer.
+     *
+     * @param host - the IP address or host name
+     * @param port - the port number
+     * @param settings timeouts and socket options.
+     * @exception IOException if an I/O error occurs.
+     * @exception SocketTimeoutException if the connect timeout expires.
+     * @exception UnknownHostException if the host cannot be resolved.
+     */
+    public TcpIpConnection(String host, int port, TcpIpSettings settings) throws IOException {
+        this.host = host;
+        this.port = port;
+        this.settings = settings;
+        InetSocketAddress address = new InetSocketAddress(host, port);
+        if (address.isUnresolved()) {
+            throw new UnknownHostException(host);
+        }
+        channel = SocketChannel.open();
+        Selector channelSelector = null;
+        try {
+            channel.setOption(StandardSocketOptions.TCP_NODELAY, settings.isTcpNoDelay());
+            channel.setOption(StandardSocketOptions.SO_KEEPALIVE, settings.isKeepAlive());
+            if (settings.getSendBufferSize() > 0) {
+                channel.setOption(StandardSocketOptions.SO_SNDBUF, settings.getSendBufferSize());
+            }
+            channel.configureBlocking(false);
+            channelSelector = Selector.open();
+            selectionKey = channel.register(channelSelector, SelectionKey.OP_CONNECT);
+            selector = channelSelector;
+            if (!channel.connect(address)) {
+                long deadline = System.nanoTime() + settings.getConnectTimeout() * 1_000_000L;
+                while (!channel.finishConnect()) {
+                    await(deadline, settings.getConnectTimeout(), "connect timed out");
+                }
+            }
+            selectionKey.interestOps(SelectionKey.OP_WRITE);
+        } catch (IOException | RuntimeException ex) {
+            if (channelSelector != null) {
+                channelSelector.close();
+            }
+            channel.close();
+            throw ex;
+        }
+        lastUsedNanos = System.nanoTime();
+    }
+
+    public String getHost() {
+        return host;
+    }
+
+    public int getPort() {
+        return port;
+    }
+
+    public TcpIpSettings getSettings() {
+        return settings;
+    }
+
+    /**
+     * Tells whether this connection is open.
+     *
+     * @return false after close or after one write error.
+     */
+    public boolean isOpen() {
+        return channel.isOpen();
+    }
+
+    /**
+     * Tells whether this connection stayed without traffic for longer than the idle timeout.
+     *
+     * @return false when the idle timeout is disabled.
+     * @see TcpIpSettings#setIdleTimeout(int)
+     */
+    public boolean isIdleExpired() {
+        return settings.getIdleTimeout() > 0
+                && System.nanoTime() - lastUsedNanos > settings.getIdleTimeout() * 1_000_000L;
+    }
+
+    /**
+     * Check if the connection can be used by the next job.
+     * <p>
+     * Bytes sent by the printer, like status, are discarded.
+     *
+     * @return false if it is closed, closed by the printer or idle expired.
+     */
+    public boolean isHealthy() {
+        if (!channel.isOpen() || isIdleExpired()) {
+            return false;
+        }
+        ByteBuffer discard = ByteBuffer.allocate(256);
+        try {
+            while (true) {
+                int n = channel.read(discard);
+                if (n < 0) {
+                    return false;
+                }
+                if (n == 0) {
+                    return true;
+                }
+                discard.clear();
+            }
+        } catch (IOException ex) {
+            return false;
+        }
+    }
+
+    /**
+     * Write all remaining bytes of the buffers with gathered writes.
+     * <p>
+     * On error, the connection is closed.
+     *
+     * @param srcs buffers to be written, from their positions.
+     * @exception IOException if an I/O error occurs.
+     * @exception SocketTimeoutException if the printer doesn't accept bytes within the write timeout.
+     */
+    public void write(ByteBuffer... srcs) throws IOException {
+        int offset = 0;
+        long deadline = 0;
+        try {
+            while (offset < srcs.length) {
+                if (!srcs[offset].hasRemaining()) {
+                    offset++;
+                    continue;
+                }
+                if (channel.write(srcs, offset, srcs.length - offset) > 0) {
+                    deadline = 0;
+                    continue;
+                }
+                // socket send buffer is full
+                if (deadline == 0) {
+                    deadline = System.nanoTime() + settings.getWriteTimeout() * 1_000_000L;
+                }
+                await(deadline, settings.getWriteTimeout(), "write timed out");
+            }
+        } catch (IOException | RuntimeException ex) {
+            close();
+            throw ex;
+        }
+        lastUsedNanos = System.nanoTime();
+    }
+
+    private void await(long deadline, int timeout, String timeoutMessage) throws IOException {
+        long select = 0;
+        if (timeout > 0) {
+            long remaining = deadline - System.nanoTime();
+            if (remaining <= 0) {
+                throw new SocketTimeoutException(timeoutMessage);
+            }
+            select = Math.max(1, remaining / 1_000_000L);
+        }
+        selector.select(select);
+        selector.selectedKeys().clear();
+    }
+
+    /**
+     * Close the channel.
+     *
+     * @exception IOException if an I/O error occurs.
+     */
+    @Override
+    public void close() throws IOException {
+        try {
+            selector.close();
+        } finally {
+            channel.close();
+        }
+    }
+
+}
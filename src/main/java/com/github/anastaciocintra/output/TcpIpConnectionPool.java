@@ -0,0 +1,266 @@
+/*
+ * Use of this source code is governed by the MIT license that can be
+ * found in the LICENSE file.
+ */
+package com.github.anastaciocintra.output;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.net.SocketTimeoutException;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Pool of persistent connections to network printers, keyed by host:port.
+ * <p>
+ * Each printer has at most one connection, lent to one job at a time, so jobs
+ * are never interleaved and printers that refuse new connections while busy
+ * are not opened twice. Other jobs to the same printer wait for the running job
+ * to be closed, at most {@link #setAcquireTimeout(long)}.
+ * <p>
+ * Between jobs, the connection is kept open and checked before being lent again.
+ * Connections idle for longer than {@link #setMaxIdleTime(long)} are closed by
+ * one daemon thread, and printers not used for this time are removed from the pool.
+ * <pre>
+ * TcpIpConnectionPool pool = new TcpIpConnectionPool(new TcpIpSettings());
+ * ...
+ * try (OutputStream outputStream = pool.getOutputStream("192.168.0.10", 9100)) {
+ *     EscPos escpos = new EscPos(outputStream);
+ *     ...
+ * }
+ * </pre>
+ */
+public class TcpIpConnectionPool implements Closeable {
+
+    /**
+     * Connection of one printer.
+     */
+    protected static class Entry {
+        protected final Semaphore lock = new Semaphore(1, true);
+        protected TcpIpConnection idleConnection;
+        protected long idleSinceNanos = System.nanoTime();
+        /**
+         * removed from the pool, the jobs that got it must get one new entry.
+         */
+        protected boolean removed;
+    }
+
+    protected final TcpIpSettings settings;
+    protected final ConcurrentHashMap<String, Entry> entries = new ConcurrentHashMap<>();
+    protected final ScheduledExecutorService evictionExecutor;
+    protected volatile long maxIdleNanos = TimeUnit.SECONDS.toNanos(60);
+    protected volatile long acquireTimeoutNanos;
+    private volatile boolean closed;
+
+    /**
+     * creates one pool with default settings.
+     */
+    public TcpIpConnectionPool() {
+        this(new TcpIpSettings());
+    }
+
+    /**
+     * creates one pool.
+     *
+     * @param settings timeouts and socket options of all connections.
+     */
+    public TcpIpConnectionPool(TcpIpSettings settings) {
+        this.settings = settings;
+        // one stalled job holds the printer for the write timeout at most
+        setAcquireTimeout(settings.getWriteTimeout() == 0 ? 0
+                : (long) settings.getConnectTimeout() + settings.getWriteTimeout());
+        evictionExecutor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "TcpIpConnectionPool-eviction");
+            thread.setDaemon(true);
+            return thread;
+        });
+        evictionExecutor.scheduleWithFixedDelay(this::evictIdleConnections, 1, 1, TimeUnit.SECONDS);
+    }
+
+    /**
+     * Set max time one connection can stay unused on the pool.
+     *
+     * @param maxIdleTime time in milliseconds, default is 60000.
+     * @return this object.
+     * @exception IllegalArgumentException if maxIdleTime is negative.
+     */
+    public TcpIpConnectionPool setMaxIdleTime(long maxIdleTime) throws IllegalArgumentException {
+        if (maxIdleTime < 0) {
+            throw new IllegalArgumentException("maxIdleTime must be >= 0");
+        }
+        this.maxIdleNanos = TimeUnit.MILLISECONDS.toNanos(maxIdleTime);
+        return this;
+    }
+
+    /**
+     * Set max time to wait while another job uses the printer.
+     *
+     * @param acquireTimeout time in milliseconds, zero to wait forever.
+     * Default value is connectTimeout + writeTimeout of the settings, or zero when writeTimeout is zero.
+     * @return this object.
+     * @exception IllegalArgumentException if acquireTimeout is negative.
+     */
+    public TcpIpConnectionPool setAcquireTimeout(long acquireTimeout) throws IllegalArgumentException {
+        if (acquireTimeout < 0) {
+            throw new IllegalArgumentException("acquireTimeout must be >= 0");
+        }
+        this.acquireTimeoutNanos = TimeUnit.MILLISECONDS.toNanos(acquireTimeout);
+        return this;
+    }
+
+    /**
+     * Get one OutputStream to the printer, using the pooled connection.
+     * <p>
+     * Waits while another job uses the printer. The connection is given back to the
+     * pool on <code>close()</code> of the stream, so don't forget to close it.
+     *
+     * @param host - the IP address or host name
+     * @param port - the port number
+     * @return stream of one job.
+     * @exception IOException if an I/O error occurs, like connect timeout.
+     * @exception SocketTimeoutException if another job uses the printer for longer than the acquire timeout.
+     * @exception InterruptedIOException if the thread is interrupted while waiting.
+     */
+    public SocketChannelOutputStream getOutputStream(String host, int port) throws IOException {
+        Entry entry = acquire(host + ":" + port);
+        TcpIpConnection connection;
+        try {
+            if (closed) {
+                throw new IOException("pool is closed");
+            }
+            connection = entry.idleConnection;
+            entry.idleConnection = null;
+            if (connection != null && !connection.isHealthy()) {
+                closeQuietly(connection);
+                connection = null;
+            }
+            if (connection == null) {
+                connection = new TcpIpConnection(host, port, settings);
+            }
+        } catch (IOException | RuntimeException ex) {
+            entry.lock.release();
+            throw ex;
+        }
+        return new SocketChannelOutputStream(connection) {
+            @Override
+            protected void releaseConnection() {
+                release(entry, this.connection);
+            }
+        };
+    }
+
+    private Entry acquire(String key) throws IOException {
+        long deadline = System.nanoTime() + acquireTimeoutNanos;
+        while (true) {
+            Entry entry = entries.computeIfAbsent(key, k -> new Entry());
+            try {
+                if (acquireTimeoutNanos == 0) {
+                    entry.lock.acquire();
+                } else if (!entry.lock.tryAcquire(deadline - System.nanoTime(), TimeUnit.NANOSECONDS)) {
+                    throw new SocketTimeoutException("timeout waiting for the printer connection " + key);
+                }
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("interrupted while waiting for the printer connection");
+            }
+            if (!entry.removed) {
+                return entry;
+            }
+            // evicted while waiting
+            entry.lock.release();
+        }
+    }
+
+    /**
+     * Get one OutputStream to the printer using default port 9100
+     *
+     * @param host - the IP address or host name
+     * @return stream of one job.
+     * @exception IOException if an I/O error occurs, like connect timeout.
+     * @see #getOutputStream(String, int)
+     */
+    public SocketChannelOutputStream getOutputStream(String host) throws IOException {
+        return getOutputStream(host, 9100);
+    }
+
+    /**
+     * Get the number of open connections waiting for the next job.
+     *
+     * @return number of idle connections.
+     */
+    public int getIdleCount() {
+        int count = 0;
+        for (Entry entry : entries.values()) {
+            if (entry.lock.tryAcquire()) {
+                if (entry.idleConnection != null) {
+                    count++;
+                }
+                entry.lock.release();
+            }
+        }
+        return count;
+    }
+
+    protected void release(Entry entry, TcpIpConnection connection) {
+        if (closed || !connection.isOpen()) {
+            closeQuietly(connection);
+        } else {
+            entry.idleConnection = connection;
+        }
+        entry.idleSinceNanos = System.nanoTime();
+        entry.lock.release();
+    }
+
+    protected void evictIdleConnections() {
+        long now = System.nanoTime();
+        for (Map.Entry<String, Entry> mapEntry : entries.entrySet()) {
+            Entry entry = mapEntry.getValue();
+            // connections in use are not idle
+            if (!entry.lock.tryAcquire()) {
+                continue;
+            }
+            try {
+                if (closed || now - entry.idleSinceNanos > maxIdleNanos) {
+                    if (entry.idleConnection != null) {
+                        closeQuietly(entry.idleConnection);
+                        entry.idleConnection = null;
+                    }
+                    if (!entry.lock.hasQueuedThreads()) {
+                        entry.removed = true;
+                        entries.remove(mapEntry.getKey(), entry);
+                    }
+                }
+            } finally {
+                entry.lock.release();
+            }
+        }
+    }
+
+    private void closeQuietly(TcpIpConnection connection) {
+        try {
+            connection.close();
+        } catch (IOException ex) {
+            Logger.getLogger(getClass().getName()).log(Level.FINE, ex.getMessage(), ex);
+        }
+    }
+
+    /**
+     * Close all idle connections and stop the eviction thread.
+     * <p>
+     * Connections in use are closed when their jobs are closed.
+     */
+    @Override
+    public void close() {
+        closed = true;
+        evictionExecutor.shutdown();
+        evictIdleConnections();
+    }
+
+}
@@ -0,0 +1,605 @@
+/*
+ * Use of this source code is governed by the MIT license that can be
+ * found in the LICENSE file.
+ */
+package com.github.anastaciocintra.output;
+
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.InetSocketAddress;
+import java.net.SocketTimeoutException;
+import java.net.StandardSocketOptions;
+import java.net.UnknownHostException;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Sends jobs to many network printers with a fixed number of selector threads.
+ * <p>
+ * Each printer (host:port) is assigned to one loop thread, that keeps its
+ * connection and one queue of outgoing jobs. Connect, write and idle timeouts of
+ * {@link TcpIpSettings} are checked by the loop, without one thread per printer.
+ * Queued jobs of one printer are sent in order, with gathered writes.
+ * <p>
+ * Jobs are submitted as bytes, or written on {@link #getOutputStream(String, int)},
+ * and each job has one <code>CompletableFuture</code> completed when all its bytes
+ * were accepted by the connection. When one connection fails, its queued jobs fail
+ * and the next job opens a new connection. The number of jobs not sent yet is limited
+ * by {@link #setMaxPendingJobs(int)}, jobs over the limit are rejected.
+ * <p>
+ * The futures are completed on one completion executor, never on the loop threads,
+ * so callbacks like <code>thenRun</code> don't stop the I/O of the other printers.
+ * <pre>
+ * TcpIpEventLoop eventLoop = new TcpIpEventLoop(2);
+ * ...
+ * TcpIpEventLoop.JobOutputStream outputStream = eventLoop.getOutputStream("192.168.0.10", 9100);
+ * EscPos escpos = new EscPos(outputStream);
+ * ...
+ * escpos.close();
+ * outputStream.getDelivery().get();
+ * </pre>
+ */
+public class TcpIpEventLoop implements Closeable {
+
+    /**
+     * One submitted job.
+     */
+    protected static class Job {
+        protected final ByteBuffer data;
+        protected final CompletableFuture<Void> future;
+
+        protected Job(ByteBuffer data, CompletableFuture<Void> future) {
+            this.data = data;
+            this.future = future;
+        }
+    }
+
+    private static final int MAX_GATHER = 16;
+    /**
+     * Default max number of jobs submitted and not sent yet.
+     */
+    public static final int DEFAULT_MAX_PENDING_JOBS = 4096;
+
+    protected final TcpIpSettings settings;
+    protected final Executor completionExecutor;
+    protected final Loop[] loops;
+    protected final ConcurrentHashMap<String, PrinterChannel> printerChannels = new ConcurrentHashMap<>();
+    private final AtomicInteger nextLoop = new AtomicInteger();
+    private final AtomicInteger pendingJobs = new AtomicInteger();
+    private volatile int maxPendingJobs = DEFAULT_MAX_PENDING_JOBS;
+    private volatile boolean closed;
+
+    /**
+     * creates one event loop with default settings.
+     *
+     * @param threads number of selector threads.
+     * @exception IOException if an I/O error occurs opening the selectors.
+     */
+    public TcpIpEventLoop(int threads) throws IOException {
+        this(threads, new TcpIpSettings());
+    }
+
+    /**
+     * creates one event loop that completes the futures on <code>ForkJoinPool.commonPool()</code>.
+     *
+     * @param threads number of selector threads, fixed for any number of printers.
+     * @param settings timeouts and socket options of all connections.
+     * @exception IOException if an I/O error occurs opening the selectors.
+     * @exception IllegalArgumentException if threads is less than 1.
+     */
+    public TcpIpEventLoop(int threads, TcpIpSettings settings) throws IOException, IllegalArgumentException {
+        this(threads, settings, ForkJoinPool.commonPool());
+    }
+
+    /**
+     * creates one event loop.
+     *
+     * @param threads number of selector threads, fixed for any number of printers.
+     * @param settings timeouts and socket options of all connections.
+     * @param completionExecutor runs the completion of the futures, and so their callbacks.
+     * @exception IOException if an I/O error occurs opening the selectors.
+     * @exception IllegalArgumentException if threads is less than 1.
+     */
+    public TcpIpEventLoop(int threads, TcpIpSettings settings, Executor completionExecutor)
+            throws IOException, IllegalArgumentException {
+        if (threads < 1) {
+            throw new IllegalArgumentException("threads must be > 0");
+        }
+        this.settings = settings;
+        this.completionExecutor = completionExecutor;
+        loops = new Loop[threads];
+        try {
+            for (int i = 0; i < threads; i++) {
+                loops[i] = new Loop();
+            }
+        } catch (IOException ex) {
+            for (Loop loop : loops) {
+                if (loop != null) {
+                    loop.selector.close();
+                }
+            }
+            throw ex;
+        }
+        for (int i = 0; i < threads; i++) {
+            Thread thread = new Thread(loops[i], "TcpIpEventLoop-" + i);
+            thread.setDaemon(true);
+            thread.start();
+        }
+    }
+
+    /**
+     * Set the max number of jobs submitted and not sent yet, of all printers.
+     *
+     * @param maxPendingJobs max number of jobs. Default value is 4096
+     * @return this object.
+     * @exception IllegalArgumentException if maxPendingJobs is less than 1.
+     */
+    public TcpIpEventLoop setMaxPendingJobs(int maxPendingJobs) throws IllegalArgumentException {
+        if (maxPendingJobs < 1) {
+            throw new IllegalArgumentException("maxPendingJobs must be > 0");
+        }
+        this.maxPendingJobs = maxPendingJobs;
+        return this;
+    }
+
+    /**
+     * Get the number of jobs submitted and not sent yet.
+     *
+     * @return number of pending jobs.
+     */
+    public int getPendingJobs() {
+        return pendingJobs.get();
+    }
+
+    /**
+     * Submit one job to the printer.
+     * <p>
+     * The buffer is sent from its position to its limit and must not be changed until the job is done.
+     *
+     * @param host - the IP address or host name
+     * @param port - the port number
+     * @param job bytes of the job.
+     * @return future completed when the job is sent, or completed exceptionally with IOException,
+     * or with RejectedExecutionException when there are too many pending jobs.
+     */
+    public CompletableFuture<Void> submit(String host, int port, ByteBuffer job) {
+        CompletableFuture<Void> future = new CompletableFuture<>();
+        if (closed) {
+            future.completeExceptionally(new IOException("event loop is closed"));
+            return future;
+        }
+        if (pendingJobs.incrementAndGet() > maxPendingJobs) {
+            pendingJobs.decrementAndGet();
+            future.completeExceptionally(new RejectedExecutionException("too many pending jobs"));
+            return future;
+        }
+        future.whenComplete((result, ex) -> pendingJobs.decrementAndGet());
+        PrinterChannel printerChannel = printerChannels.computeIfAbsent(host + ":" + port,
+                key -> new PrinterChannel(host, port, loops[Math.floorMod(nextLoop.getAndIncrement(), loops.length)]));
+        printerChannel.loop.execute(() -> printerChannel.enqueue(new Job(job, future)));
+        return future;
+    }
+
+    /**
+     * Submit one job to the printer.
+     *
+     * @param host - the IP address or host name
+     * @param port - the port number
+     * @param job bytes of the job.
+     * @return future completed when the job is sent, or completed exceptionally with IOException.
+     * @see #submit(String, int, ByteBuffer)
+     */
+    public CompletableFuture<Void> submit(String host, int port, byte[] job) {
+        return submit(host, port, ByteBuffer.wrap(job));
+    }
+
+    /**
+     * Get one OutputStream that holds one job and submits it on <code>close()</code>.
+     *
+     * @param host - the IP address or host name
+     * @param port - the port number
+     * @return stream of one job.
+     */
+    public JobOutputStream getOutputStream(String host, int port) {
+        return new JobOutputStream(host, port);
+    }
+
+    /**
+     * Complete the future of one job on the completion executor.
+     *
+     * @param job the job.
+     * @param ex the error, or null if the job is sent.
+     */
+    protected void complete(Job job, Throwable ex) {
+        Runnable completion = ex == null ? () -> job.future.complete(null) : () -> job.future.completeExceptionally(ex);
+        try {
+            completionExecutor.execute(completion);
+        } catch (RejectedExecutionException rejected) {
+            // executor shut down, the job must not stay pending
+            completion.run();
+        }
+    }
+
+    /**
+     * Stop the loop threads, closing all connections.
+     * <p>
+     * Jobs not sent yet are completed exceptionally.
+     */
+    @Override
+    public void close() {
+        closed = true;
+        for (Loop loop : loops) {
+            loop.selector.wakeup();
+        }
+    }
+
+    /**
+     * Holds the bytes of one job, submitted to the event loop on <code>close()</code>.
+     */
+    public class JobOutputStream extends ByteArrayOutputStream implements DeliveryAware {
+        // buf is sent without copy, it cannot change after close
+        protected final String host;
+        protected final int port;
+        protected final CompletableFuture<Void> delivery = new CompletableFuture<>();
+        private boolean submitted;
+
+        protected JobOutputStream(String host, int port) {
+            super(8192);
+            this.host = host;
+            this.port = port;
+        }
+
+        /**
+         * Get the delivery of this job.
+         *
+         * @return future completed when the job is sent, after <code>close()</code>.
+         */
+        @Override
+        public CompletableFuture<Void> getDelivery() {
+            return delivery;
+        }
+
+        @Override
+        public synchronized void write(int b) {
+            checkNotSubmitted();
+            super.write(b);
+        }
+
+        @Override
+        public synchronized void write(byte[] b, int off, int len) {
+            checkNotSubmitted();
+            super.write(b, off, len);
+        }
+
+        @Override
+        public synchronized void reset() {
+            checkNotSubmitted();
+            super.reset();
+        }
+
+        private void checkNotSubmitted() {
+            if (submitted) {
+                throw new UncheckedIOException(new IOException("stream is closed"));
+            }
+        }
+
+        /**
+         * Submit the job to the event loop, without waiting.
+         * <p>
+         * Writes after that throw UncheckedIOException.
+         */
+        @Override
+        public synchronized void close() {
+            if (submitted) {
+                return;
+            }
+            submitted = true;
+            submit(host, port, ByteBuffer.wrap(buf, 0, count)).whenComplete((result, ex) -> {
+                if (ex != null) {
+                    delivery.completeExceptionally(ex);
+                } else {
+                    delivery.complete(null);
+                }
+            });
+        }
+    }
+
+    /**
+     * One selector thread.
+     */
+    protected class Loop implements Runnable {
+        protected final Selector selector;
+        protected final ConcurrentLinkedQueue<Runnable> tasks = new ConcurrentLinkedQueue<>();
+        protected final List<PrinterChannel> channels = new ArrayList<>();
+        protected volatile boolean terminated;
+
+        protected Loop() throws IOException {
+            selector = Selector.open();
+        }
+
+        protected void execute(Runnable task) {
+            tasks.add(task);
+            selector.wakeup();
+            if (terminated) {
+                // no loop thread anymore, the caller fails the job
+                runTasks();
+            }
+        }
+
+        /**
+         * Run queued tasks, serialized: after termination, callers run them too.
+         */
+        private synchronized void runTasks() {
+            Runnable task;
+            while ((task = tasks.poll()) != null) {
+                try {
+                    task.run();
+                } catch (RuntimeException ex) {
+                    Logger.getLogger(getClass().getName()).log(Level.SEVERE, ex.getMessage(), ex);
+                }
+            }
+        }
+
+        @Override
+        public void run() {
+            try {
+                while (!closed) {
+                    runTasks();
+                    selector.select(checkDeadlines());
+                    Iterator<SelectionKey> keys = selector.selectedKeys().iterator();
+                    while (keys.hasNext()) {
+                        SelectionKey key = keys.next();
+                        keys.remove();
+                        PrinterChannel printerChannel = (PrinterChannel) key.attachment();
+                        try {
+                            printerChannel.ready(key);
+                        } catch (RuntimeException ex) {
+                            // only this printer fails
+                            printerChannel.fail(new IOException(ex));
+                        }
+                    }
+                }
+            } catch (IOException | RuntimeException ex) {
+                Logger.getLogger(getClass().getName()).log(Level.SEVERE, ex.getMessage(), ex);
+            } finally {
+                terminated = true;
+                IOException closedException = new IOException("event loop is closed");
+                synchronized (this) {
+                    for (PrinterChannel printerChannel : channels) {
+                        printerChannel.fail(closedException);
+                    }
+                }
+                runTasks();
+                try {
+                    selector.close();
+                } catch (IOException ex) {
+                    Logger.getLogger(getClass().getName()).log(Level.FINE, ex.getMessage(), ex);
+                }
+            }
+        }
+
+        /**
+         * Fail expired connects and writes and close idle connections.
+         *
+         * @return milliseconds until the next deadline, zero when there is no deadline.
+         */
+        private long checkDeadlines() {
+            long now = System.nanoTime();
+            long next = Long.MAX_VALUE;
+            for (PrinterChannel printerChannel : channels) {
+                long deadline = printerChannel.checkDeadline(now);
+                if (deadline != 0) {
+                    next = Math.min(next, deadline - now);
+                }
+            }
+            if (next == Long.MAX_VALUE) {
+                return 0;
+            }
+            return Math.max(1, (next + 999_999) / 1_000_000);
+        }
+    }
+
+    /**
+     * Connection and job queue of one printer, used only by its loop thread.
+     */
+    protected class PrinterChannel {
+        protected final String host;
+        protected final int port;
+        protected final Loop loop;
+        protected final ArrayDeque<Job> queue = new ArrayDeque<>();
+        protected SocketChannel channel;
+        protected SelectionKey key;
+        protected boolean connected;
+        protected long deadlineNanos;
+        protected long lastActivityNanos;
+        private boolean registered;
+
+        protected PrinterChannel(String host, int port, Loop loop) {
+            this.host = host;
+            this.port = port;
+            this.loop = loop;
+        }
+
+        protected void enqueue(Job job) {
+            if (loop.terminated) {
+                complete(job, new IOException("event loop is closed"));
+                return;
+            }
+            if (!registered) {
+                loop.channels.add(this);
+                registered = true;
+            }
+            queue.add(job);
+            if (channel == null) {
+                connect();
+            } else if (connected) {
+                try {
+                    write();
+                } catch (IOException ex) {
+                    fail(ex);
+                }
+            }
+        }
+
+        private void connect() {
+            try {
+                InetSocketAddress address = new InetSocketAddress(host, port);
+                if (address.isUnresolved()) {
+                    throw new UnknownHostException(host);
+                }
+                channel = SocketChannel.open();
+                channel.setOption(StandardSocketOptions.TCP_NODELAY, settings.isTcpNoDelay());
+                channel.setOption(StandardSocketOptions.SO_KEEPALIVE, settings.isKeepAlive());
+                if (settings.getSendBufferSize() > 0) {
+                    channel.setOption(StandardSocketOptions.SO_SNDBUF, settings.getSendBufferSize());
+                }
+                channel.configureBlocking(false);
+                key = channel.register(loop.selector, SelectionKey.OP_CONNECT, this);
+                if (channel.connect(address)) {
+                    connected();
+                } else {
+                    deadlineNanos = deadline(settings.getConnectTimeout());
+                }
+            } catch (IOException ex) {
+                fail(ex);
+            } catch (RuntimeException ex) {
+                // like one invalid port
+                fail(new IOException(ex));
+            }
+        }
+
+        private void connected() throws IOException {
+            connected = true;
+            deadlineNanos = 0;
+            lastActivityNanos = System.nanoTime();
+            write();
+        }
+
+        protected void ready(SelectionKey key) {
+            try {
+                if (key.isConnectable()) {
+                    if (channel.finishConnect()) {
+                        connected();
+                    }
+                    return;
+                }
+                if (key.isReadable()) {
+                    // status sent by the printer is discarded
+                    ByteBuffer discard = ByteBuffer.allocate(256);
+                    int n;
+                    while ((n = channel.read(discard)) > 0) {
+                        discard.clear();
+                    }
+                    if (n < 0) {
+                        throw new IOException("connection closed by the printer");
+                    }
+                }
+                if (key.isValid() && key.isWritable()) {
+                    write();
+                }
+            } catch (IOException ex) {
+                fail(ex);
+            }
+        }
+
+        private void write() throws IOException {
+            while (!queue.isEmpty()) {
+                ByteBuffer[] srcs = new ByteBuffer[Math.min(queue.size(), MAX_GATHER)];
+                Iterator<Job> jobs = queue.iterator();
+                for (int i = 0; i < srcs.length; i++) {
+                    srcs[i] = jobs.next().data;
+                }
+                long n = channel.write(srcs);
+                if (n > 0) {
+                    lastActivityNanos = System.nanoTime();
+                    deadlineNanos = 0;
+                }
+                while (!queue.isEmpty() && !queue.peek().data.hasRemaining()) {
+                    complete(queue.poll(), null);
+                }
+                if (!queue.isEmpty() && queue.peek().data.hasRemaining()) {
+                    break;
+                }
+            }
+            if (queue.isEmpty()) {
+                deadlineNanos = 0;
+                key.interestOps(SelectionKey.OP_READ);
+            } else {
+                // socket send buffer is full
+                if (deadlineNanos == 0) {
+                    deadlineNanos = deadline(settings.getWriteTimeout());
+                }
+                key.interestOps(SelectionKey.OP_READ | SelectionKey.OP_WRITE);
+            }
+        }
+
+        private long deadline(int timeout) {
+            return timeout > 0 ? System.nanoTime() + timeout * 1_000_000L : 0;
+        }
+
+        /**
+         * Check connect, write and idle timeouts.
+         *
+         * @param now actual nanoTime.
+         * @return next deadline, or zero if there is none.
+         */
+        protected long checkDeadline(long now) {
+            if (deadlineNanos != 0) {
+                if (now - deadlineNanos >= 0) {
+                    fail(new SocketTimeoutException(connected ? "write timed out" : "connect timed out"));
+                    return 0;
+                }
+                return deadlineNanos;
+            }
+            if (connected && queue.isEmpty() && settings.getIdleTimeout() > 0) {
+                long idleDeadline = lastActivityNanos + settings.getIdleTimeout() * 1_000_000L;
+                if (now - idleDeadline >= 0) {
+                    closeChannel();
+                    return 0;
+                }
+                return idleDeadline;
+            }
+            return 0;
+        }
+
+        protected void fail(IOException ex) {
+            closeChannel();
+            Job job;
+            while ((job = queue.poll()) != null) {
+                complete(job, ex);
+            }
+        }
+
+        private void closeChannel() {
+            if (channel != null) {
+                try {
+                    channel.close();
+                } catch (IOException ex) {
+                    Logger.getLogger(getClass().getName()).log(Level.FINE, ex.getMessage(), ex);
+                }
+            }
+            channel = null;
+            key = null;
+            connected = false;
+            deadlineNanos = 0;
+        }
+    }
+
+}
@@ -8,6 +8,9 @@ package com.github.anastaciocintra.output;
 
 import java.io.*;
 import java.net.Socket;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ThreadFactory;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -19,9 +22,15 @@ import java.util.logging.Logger;
  * be reused and the last command should be <code>close()</code>, after that,
  * you need to create another instance to send data to the printer.
  */
-public class TcpIpOutputStream  extends PipedOutputStream {
-    protected final PipedInputStream pipedInputStream;
+public class TcpIpOutputStream  extends RingBufferOutputStream implements DeliveryAware {
+    /**
+     * print thread, null when the print task runs on one Executor.
+     */
     protected final Thread threadPrint;
+    protected final CompletableFuture<Void> delivery = new CompletableFuture<>();
+    protected volatile Thread.UncaughtExceptionHandler uncaughtException = (Thread t, Throwable e) -> {
+        Logger.getLogger(this.getClass().getName()).log(Level.SEVERE, e.getMessage(),e);
+    };
 
 
 
@@ -37,37 +46,86 @@ public class TcpIpOutputStream  extends PipedOutputStream {
      */
 
     public TcpIpOutputStream(String host, int port) throws IOException {
-        pipedInputStream = new PipedInputStream();
-        super.connect(pipedInputStream);
-        Thread.UncaughtExceptionHandler uncaughtException = (Thread t, Throwable e) -> {
-            Logger.getLogger(this.getClass().getName()).log(Level.SEVERE, e.getMessage(),e);
-        };
+        this(host, port, DEFAULT_CAPACITY);
+    }
+
+    /**
+     * creates one instance of TcpIpOutputStream.
+     * <p>
+     * Writes wait for the printer only when capacity bytes are pending.
+     *
+     * @param host - the IP address
+     * @param port - the port number
+     * @param capacity - size of the ring buffer between the caller and the print thread.
+     * @exception IOException if an I/O error occurs.
+     * @exception RuntimeException if an error occurs while in thread
+     * @see java.net.Socket
+     * @see RingBufferOutputStream
+     */
+    public TcpIpOutputStream(String host, int port, int capacity) throws IOException {
+        this(host, port, capacity, PrintThreads.platformThreadFactory());
+    }
+
+    /**
+     * creates one instance of TcpIpOutputStream with the print thread created by threadFactory.
+     *
+     * @param host - the IP address
+     * @param port - the port number
+     * @param capacity - size of the ring buffer between the caller and the print thread.
+     * @param threadFactory - creates the print thread.
+     * @exception IOException if an I/O error occurs.
+     * @see PrintThreads#virtualThreadFactory()
+     */
+    public TcpIpOutputStream(String host, int port, int capacity, ThreadFactory threadFactory) throws IOException {
+        super(capacity);
+        threadPrint = threadFactory.newThread(createRunnablePrint(host, port));
+        threadPrint.start();
+    }
 
+    /**
+     * creates one instance of TcpIpOutputStream with the print task running on executor.
+     * <p>
+     * The executor needs one thread to this instance while the job is sent.
+     *
+     * @param host - the IP address
+     * @param port - the port number
+     * @param capacity - size of the ring buffer between the caller and the print thread.
+     * @param executor - runs the print task.
+     * @exception IOException if an I/O error occurs.
+     * @exception java.util.concurrent.RejectedExecutionException if the executor doesn't accept the task.
+     */
+    public TcpIpOutputStream(String host, int port, int capacity, Executor executor) throws IOException {
+        super(capacity);
+        threadPrint = null;
+        executor.execute(createRunnablePrint(host, port));
+    }
 
-        Runnable runnablePrint = () -> {
+    private Runnable createRunnablePrint(String host, int port) {
+        return () -> {
 
             try (Socket socket = new Socket(host,port)) {
 
                 OutputStream outputStream = socket.getOutputStream();
 
 
-                byte[] buf = new byte[1024];
+                byte[] buf = new byte[Math.min(getCapacity(), 16 * 1024)];
                 while(true) {
-                    int n = pipedInputStream.read(buf);
+                    int n = inputStream.read(buf);
                     if( n < 0 ) break;
                     outputStream.write(buf,0,n);
                 }
             } catch (Exception ex) {
-                throw new RuntimeException(ex);
+                // next writes fail instead of waiting forever
+                inputStream.abort(ex);
+                delivery.completeExceptionally(ex);
+                uncaughtException.uncaughtException(Thread.currentThread(), new RuntimeException(ex));
+            } finally {
+                inputStream.close();
+                // socket is closed, all bytes were sent
+                delivery.complete(null);
             }
 
         };
-
-        threadPrint = new Thread(runnablePrint);
-        threadPrint.setUncaughtExceptionHandler(uncaughtException);
-        threadPrint.start();
-
-
     }
 
     /**
@@ -83,6 +141,17 @@ public class TcpIpOutputStream  extends PipedOutputStream {
         this(host,9100);
     }
 
+    /**
+     * Get the delivery of the job.
+     *
+     * @return future completed when the socket is closed after <code>close()</code>,
+     * or completed exceptionally with the error of the print thread.
+     */
+    @Override
+    public CompletableFuture<Void> getDelivery() {
+        return delivery;
+    }
+
     /**
      * Set UncaughtExceptionHandler to make special error treatment.
      * <p>
@@ -91,7 +160,7 @@ public class TcpIpOutputStream  extends PipedOutputStream {
      * @param uncaughtException used on (another thread) print.
      */
     public void setUncaughtException(Thread.UncaughtExceptionHandler uncaughtException) {
-        threadPrint.setUncaughtExceptionHandler(uncaughtException);
+        this.uncaughtException = uncaughtException;
     }
 
 }
@@ -0,0 +1,181 @@
+/*
+ * Use of this source code is governed by the MIT license that can be
+ * found in the LICENSE file.
+ */
+package com.github.anastaciocintra.output;
+
+/**
+ * Timeouts and socket options of network printer connections.
+ * <p>
+ * Default values: connect timeout 5000 ms, write timeout 10000 ms, idle timeout 0 (disabled),
+ * TCP_NODELAY on, SO_KEEPALIVE off, system default SO_SNDBUF and job buffer of 1 MiB.
+ * <p>
+ * Don't change one instance while it is in use by connections.
+ *
+ * @see TcpIpConnection
+ * @see SocketChannelOutputStream
+ */
+public class TcpIpSettings {
+
+    protected int connectTimeout = 5000;
+    protected int writeTimeout = 10000;
+    protected int idleTimeout = 0;
+    protected boolean tcpNoDelay = true;
+    protected boolean keepAlive = false;
+    protected int sendBufferSize = 0;
+    protected int jobBufferSize = 1024 * 1024;
+
+    /**
+     * creates settings with default values.
+     */
+    public TcpIpSettings() {
+    }
+
+    /**
+     * creates a copy of another settings.
+     *
+     * @param another settings to be copied.
+     */
+    public TcpIpSettings(TcpIpSettings another) {
+        this.connectTimeout = another.connectTimeout;
+        this.writeTimeout = another.writeTimeout;
+        this.idleTimeout = another.idleTimeout;
+        this.tcpNoDelay = another.tcpNoDelay;
+        this.keepAlive = another.keepAlive;
+        this.sendBufferSize = another.sendBufferSize;
+        this.jobBufferSize = another.jobBufferSize;
+    }
+
+    /**
+     * Set max time to establish the connection.
+     *
+     * @param connectTimeout time in milliseconds, zero to wait forever.
+     * @return this object.
+     * @exception IllegalArgumentException if connectTimeout is negative.
+     */
+    public TcpIpSettings setConnectTimeout(int connectTimeout) throws IllegalArgumentException {
+        if (connectTimeout < 0) {
+            throw new IllegalArgumentException("connectTimeout must be >= 0");
+        }
+        this.connectTimeout = connectTimeout;
+        return this;
+    }
+
+    /**
+     * Set max time to wait while the printer doesn't accept any byte.
+     * <p>
+     * One dead printer fills the socket send buffer, after that, the write fails after this time.
+     *
+     * @param writeTimeout time in milliseconds, zero to wait forever.
+     * @return this object.
+     * @exception IllegalArgumentException if writeTimeout is negative.
+     */
+    public TcpIpSettings setWriteTimeout(int writeTimeout) throws IllegalArgumentException {
+        if (writeTimeout < 0) {
+            throw new IllegalArgumentException("writeTimeout must be >= 0");
+        }
+        this.writeTimeout = writeTimeout;
+        return this;
+    }
+
+    /**
+     * Set max time one connection can stay without traffic.
+     * <p>
+     * Many printers drop idle connections. Connections idle for longer than this time
+     * are reopened before the next write.
+     *
+     * @param idleTimeout time in milliseconds, zero to disable.
+     * @return this object.
+     * @exception IllegalArgumentException if idleTimeout is negative.
+     */
+    public TcpIpSettings setIdleTimeout(int idleTimeout) throws IllegalArgumentException {
+        if (idleTimeout < 0) {
+            throw new IllegalArgumentException("idleTimeout must be >= 0");
+        }
+        this.idleTimeout = idleTimeout;
+        return this;
+    }
+
+    /**
+     * Set TCP_NODELAY socket option.
+     *
+     * @param tcpNoDelay true to disable Nagle's algorithm.
+     * @return this object.
+     */
+    public TcpIpSettings setTcpNoDelay(boolean tcpNoDelay) {
+        this.tcpNoDelay = tcpNoDelay;
+        return this;
+    }
+
+    /**
+     * Set SO_KEEPALIVE socket option.
+     *
+     * @param keepAlive true to enable keep alive.
+     * @return this object.
+     */
+    public TcpIpSettings setKeepAlive(boolean keepAlive) {
+        this.keepAlive = keepAlive;
+        return this;
+    }
+
+    /**
+     * Set SO_SNDBUF socket option.
+     *
+     * @param sendBufferSize size in bytes, zero to use the system default.
+     * @return this object.
+     * @exception IllegalArgumentException if sendBufferSize is negative.
+     */
+    public TcpIpSettings setSendBufferSize(int sendBufferSize) throws IllegalArgumentException {
+        if (sendBufferSize < 0) {
+            throw new IllegalArgumentException("sendBufferSize must be >= 0");
+        }
+        this.sendBufferSize = sendBufferSize;
+        return this;
+    }
+
+    /**
+     * Set max number of bytes held before sending.
+     * <p>
+     * Jobs up to this size are sent with one single gathered write, on flush or close.
+     *
+     * @param jobBufferSize size in bytes.
+     * @return this object.
+     * @exception IllegalArgumentException if jobBufferSize is less than 1.
+     */
+    public TcpIpSettings setJobBufferSize(int jobBufferSize) throws IllegalArgumentException {
+        if (jobBufferSize < 1) {
+            throw new IllegalArgumentException("jobBufferSize must be > 0");
+        }
+        this.jobBufferSize = jobBufferSize;
+        return this;
+    }
+
+    public int getConnectTimeout() {
+        return connectTimeout;
+    }
+
+    public int getWriteTimeout() {
+        return writeTimeout;
+    }
+
+    public int getIdleTimeout() {
+        return idleTimeout;
+    }
+
+    public boolean isTcpNoDelay() {
+        return tcpNoDelay;
+    }
+
+    public boolean isKeepAlive() {
+        return keepAlive;
+    }
+
+    public int getSendBufferSize() {
+        return sendBufferSize;
+    }
+
+    public int getJobBufferSize() {
+        return jobBufferSize;
+    }
+
+}
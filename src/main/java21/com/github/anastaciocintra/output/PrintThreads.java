@@ -0,0 +1,51 @@
+/*
+ * Use of this source code is governed by the MIT license that can be
+ * found in the LICENSE file.
+ */
+package com.github.anastaciocintra.output;
+
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * Thread factories for the print threads of output streams.
+ * <p>
+ * Java 21 version of this class, on META-INF/versions/21 of the multi-release jar,
+ * with the same public API of the Java 8 version.
+ */
+public final class PrintThreads {
+
+    private static final ThreadFactory platformThreadFactory = Thread::new;
+
+    private static final ThreadFactory virtualThreadFactory = Thread.ofVirtual().name("escpos-print-", 0).factory();
+
+    private PrintThreads() {
+    }
+
+    /**
+     * Tells whether this runtime supports virtual threads.
+     *
+     * @return true on Java 21 or newer.
+     */
+    public static boolean isVirtualThreadSupported() {
+        return true;
+    }
+
+    /**
+     * Get the factory of platform threads, the default of output streams.
+     *
+     * @return factory equivalent to <code>new Thread(runnable)</code>.
+     */
+    public static ThreadFactory platformThreadFactory() {
+        return platformThreadFactory;
+    }
+
+    /**
+     * Get one factory of virtual threads.
+     *
+     * @return factory of virtual threads.
+     */
+    public static ThreadFactory virtualThreadFactory() {
+        return virtualThreadFactory;
+    }
+
+}
@@ -0,0 +1,49 @@
+package com.github.anastaciocintra.escpos;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.util.Arrays;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CodePageEncoderTest {
+
+    private static final String TEXT = "Café ção € 12,50 Αθήνα "
+            + "Москва שלום ╔═╗ "
+            + "😀 \ud83d x \ude00 ?";
+
+    @Test
+    void sameAsGetBytesTestCase() throws Exception{
+        for (EscPos.CharacterCodeTable table : EscPos.CharacterCodeTable.values()) {
+            assertEncoding(table.charsetName);
+        }
+        assertEncoding("UTF-8");
+        assertEncoding("GBK");
+    }
+
+    @Test
+    void bufferedTextTestCase() throws Exception{
+        StringBuilder text = new StringBuilder();
+        for (int i = 0; i < 50; i++) {
+            text.append(TEXT);
+        }
+        ByteArrayOutputStream result = new ByteArrayOutputStream();
+        EscPos escpos = new EscPos(result, 64);
+        escpos.setCharacterCodeTable(EscPos.CharacterCodeTable.CP858_Euro);
+        escpos.write(text.toString());
+        escpos.close();
+
+        byte[] textBytes = text.toString().getBytes("cp858");
+        byte[] resultBytes = result.toByteArray();
+        assertArrayEquals(textBytes, Arrays.copyOfRange(resultBytes, resultBytes.length - textBytes.length, resultBytes.length));
+    }
+
+    private void assertEncoding(String charsetName) throws Exception {
+        CodePageEncoder encoder = CodePageEncoder.forCharsetName(charsetName);
+        byte[] dst = new byte[encoder.maxBytes(TEXT.length())];
+        int len = encoder.encode(TEXT, 0, TEXT.length(), dst, 0);
+        assertArrayEquals(TEXT.getBytes(charsetName), Arrays.copyOf(dst, len), charsetName);
+    }
+
+}
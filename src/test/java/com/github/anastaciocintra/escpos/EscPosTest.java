@@ -4,7 +4,15 @@ import org.junit.jupiter.api.Test;
 
 import java.io.BufferedOutputStream;
 import java.io.ByteArrayOutputStream;
+import java.io.IOException;
 import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+
+import com.github.anastaciocintra.escpos.barcode.BarCode;
+import com.github.anastaciocintra.escpos.barcode.BarCodeWrapperInterface;
+import com.github.anastaciocintra.escpos.barcode.PDF417;
+import com.github.anastaciocintra.escpos.barcode.QRCode;
 
 import static com.github.anastaciocintra.escpos.EscPosConst.ESC;
 import static org.junit.jupiter.api.Assertions.*;
@@ -45,6 +53,263 @@ class EscPosTest {
         assertArrayEquals(expected.toByteArray(), result.toByteArray());
 
     }
+    @Test
+    void stateTrackingTestCase() throws Exception{
+        ByteArrayOutputStream result = new ByteArrayOutputStream();
+        EscPos escpos = new EscPos(result);
+        escpos.setStateTracking(true);
+
+        Style bold = new Style().setBold(true);
+        escpos.write(bold, "a");
+        escpos.write(bold, "b");
+        escpos.write(new Style(bold).setJustification(EscPosConst.Justification.Center), "c");
+        escpos.write(EscPosConst.LF);
+        escpos.write(bold, "d");
+        escpos.close();
+
+        ByteArrayOutputStream expected = new ByteArrayOutputStream();
+        expected.write(bold.getConfigBytes());
+        expected.write('a');
+        expected.write('b');
+        expected.write(ESC);
+        expected.write('a');
+        expected.write(EscPosConst.Justification.Center.value);
+        expected.write('c');
+        // raw bytes discard the printer state
+        expected.write(EscPosConst.LF);
+        expected.write(bold.getConfigBytes());
+        expected.write('d');
+
+        assertArrayEquals(expected.toByteArray(), result.toByteArray());
+
+    }
+    @Test
+    void customStyleTestCase() throws Exception{
+        Style custom = new Style() {
+            @Override
+            public byte[] getConfigBytes() throws IOException {
+                ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+                bytes.write(super.getConfigBytes());
+                bytes.write(ESC);
+                bytes.write('V');
+                bytes.write(1);
+                return bytes.toByteArray();
+            }
+        }.setBold(true).freeze();
+        Style bold = new Style().setBold(true);
+
+        ByteArrayOutputStream result = new ByteArrayOutputStream();
+        EscPos escpos = new EscPos(result);
+        escpos.setStateTracking(true);
+        escpos.write(custom, "a");
+        escpos.write(custom, "b");
+        escpos.write(bold, "c");
+        escpos.close();
+
+        // the overridden commands are always sent, and the printer state is unknown after them
+        ByteArrayOutputStream expected = new ByteArrayOutputStream();
+        expected.write(custom.getConfigBytes());
+        expected.write('a');
+        expected.write(custom.getConfigBytes());
+        expected.write('b');
+        expected.write(bold.getConfigBytes());
+        expected.write('c');
+
+        assertArrayEquals(expected.toByteArray(), result.toByteArray());
 
+    }
+    @Test
+    void frozenStyleTestCase() throws Exception{
+        Style title = new Style().setBold(true).setFontSize(Style.FontSize._2, Style.FontSize._2).freeze();
+        Style copy = new Style(title);
+
+        assertTrue(title.isFrozen());
+        assertFalse(copy.isFrozen());
+        assertArrayEquals(copy.getConfigBytes(), title.getConfigBytes());
+        assertThrows(IllegalStateException.class, () -> title.setBold(false));
+
+        ByteArrayOutputStream result = new ByteArrayOutputStream();
+        EscPos escpos = new EscPos(result);
+        escpos.setStateTracking(true);
+        escpos.write(title, "a");
+        escpos.write(title, "b");
+        escpos.close();
+
+        ByteArrayOutputStream expected = new ByteArrayOutputStream();
+        expected.write(copy.getConfigBytes());
+        expected.write('a');
+        expected.write('b');
+
+        assertArrayEquals(expected.toByteArray(), result.toByteArray());
+
+    }
+    @Test
+    void bufferedTestCase() throws Exception{
+        ByteArrayOutputStream expected = new ByteArrayOutputStream();
+        EscPos unbuffered = new EscPos(expected);
+        unbuffered.writeLF("line 1");
+        unbuffered.feed(2);
+        unbuffered.cut(EscPos.CutMode.FULL);
+        unbuffered.close();
+
+        int[] writes = new int[1];
+        ByteArrayOutputStream result = new ByteArrayOutputStream();
+        OutputStream counter = new OutputStream() {
+            @Override
+            public void write(int b) {
+                writes[0]++;
+                result.write(b);
+            }
+
+            @Override
+            public void write(byte[] b, int off, int len) {
+                writes[0]++;
+                result.write(b, off, len);
+            }
+        };
+        EscPos escpos = new EscPos(counter, 1024);
+        escpos.writeLF("line 1");
+        escpos.feed(2);
+        escpos.cut(EscPos.CutMode.FULL);
+        assertEquals(0, writes[0]);
+        escpos.close();
+
+        assertEquals(1, writes[0]);
+        assertArrayEquals(expected.toByteArray(), result.toByteArray());
+
+    }
+    @Test
+    void autoCharacterCodeTableTestCase() throws Exception{
+        ByteArrayOutputStream result = new ByteArrayOutputStream();
+        EscPos escpos = new EscPos(result);
+        escpos.setAutoCharacterCodeTable(
+                EscPos.CharacterCodeTable.CP858_Euro,
+                EscPos.CharacterCodeTable.CP737_Greek,
+                EscPos.CharacterCodeTable.CP866_Cyrillic_2);
+
+        escpos.write(new Style(), "Açaí Αθήνα Москва");
+        escpos.write(new Style(), "Москва");
+        escpos.close();
+
+        ByteArrayOutputStream expected = new ByteArrayOutputStream();
+        expected.write(new Style().getConfigBytes());
+        expected.write(ESC);
+        expected.write('t');
+        expected.write(EscPos.CharacterCodeTable.CP858_Euro.value);
+        expected.write("Açaí ".getBytes("cp858"));
+        expected.write(ESC);
+        expected.write('t');
+        expected.write(EscPos.CharacterCodeTable.CP737_Greek.value);
+        expected.write("Αθήνα ".getBytes("cp737"));
+        expected.write(ESC);
+        expected.write('t');
+        expected.write(EscPos.CharacterCodeTable.CP866_Cyrillic_2.value);
+        expected.write("Москва".getBytes("cp866"));
+        expected.write(new Style().getConfigBytes());
+        expected.write("Москва".getBytes("cp866"));
+
+        assertArrayEquals(expected.toByteArray(), result.toByteArray());
+
+    }
+    @Test
+    void byteBufferTestCase() throws Exception{
+        ByteArrayOutputStream expected = new ByteArrayOutputStream();
+        EscPos escpos = new EscPos(expected);
+        escpos.setCharacterCodeTable(EscPos.CharacterCodeTable.CP858_Euro);
+        escpos.writeLF(new Style().setBold(true), "Café € 1,50 - Ação");
+        escpos.feed(3);
+        escpos.cut(EscPos.CutMode.PART);
+        escpos.close();
+
+        // direct buffer growing when full
+        ByteBufferEscPos growing = new ByteBufferEscPos(ByteBuffer.allocateDirect(4));
+        growing.setCharacterCodeTable(EscPos.CharacterCodeTable.CP858_Euro);
+        growing.writeLF(new Style().setBold(true), "Café € 1,50 - Ação");
+        growing.feed(3);
+        growing.cut(EscPos.CutMode.PART);
+        growing.close();
+        ByteBuffer buffer = growing.getByteBuffer();
+        buffer.flip();
+        byte[] result = new byte[buffer.remaining()];
+        buffer.get(result);
+        assertArrayEquals(expected.toByteArray(), result);
+
+        // heap buffer spilling to the channel
+        ByteArrayOutputStream spilled = new ByteArrayOutputStream();
+        ByteBufferEscPos spilling = new ByteBufferEscPos(ByteBuffer.allocate(4), Channels.newChannel(spilled));
+        spilling.setCharacterCodeTable(EscPos.CharacterCodeTable.CP858_Euro);
+        spilling.writeLF(new Style().setBold(true), "Café € 1,50 - Ação");
+        spilling.feed(3);
+        spilling.cut(EscPos.CutMode.PART);
+        spilling.close();
+        assertArrayEquals(expected.toByteArray(), spilled.toByteArray());
+
+        // bytes before the initial position are kept
+        ByteArrayOutputStream spilledAfter = new ByteArrayOutputStream();
+        ByteBuffer prefixed = ByteBuffer.allocate(6);
+        prefixed.put(new byte[]{7, 7});
+        ByteBufferEscPos spillingAfter = new ByteBufferEscPos(prefixed, Channels.newChannel(spilledAfter));
+        spillingAfter.setCharacterCodeTable(EscPos.CharacterCodeTable.CP858_Euro);
+        spillingAfter.writeLF(new Style().setBold(true), "Café € 1,50 - Ação");
+        spillingAfter.feed(3);
+        spillingAfter.cut(EscPos.CutMode.PART);
+        spillingAfter.close();
+        assertArrayEquals(expected.toByteArray(), spilledAfter.toByteArray());
+        assertEquals(7, prefixed.get(0));
+        assertEquals(7, prefixed.get(1));
+        assertEquals(2, prefixed.position());
+
+    }
+
+
+    @Test
+    void infoTestCase() throws Exception{
+        ByteArrayOutputStream result = new ByteArrayOutputStream();
+        EscPos escpos = new EscPos(result);
+        Style frozen = new Style().setBold(true).freeze();
+        escpos.setStyle(frozen);
+        escpos.info();
+        escpos.close();
+        assertSame(frozen, escpos.getStyle());
+        assertTrue(result.size() > 0);
+    }
+
+    @Test
+    void barCodeWriteToTestCase() throws Exception{
+        BarCodeWrapperInterface[] barcodes = {
+                new BarCode().setJustification(EscPosConst.Justification.Center),
+                new QRCode().setSize(5).setJustification(EscPosConst.Justification.Right),
+                new PDF417().setJustification(EscPosConst.Justification.Center)
+        };
+        for (BarCodeWrapperInterface barcode : barcodes) {
+            ByteArrayOutputStream written = new ByteArrayOutputStream();
+            barcode.writeTo("123456789012", written);
+            assertArrayEquals(barcode.getBytes("123456789012"), written.toByteArray());
+
+            ByteArrayOutputStream result = new ByteArrayOutputStream();
+            EscPos escpos = new EscPos(result);
+            escpos.write(barcode, "123456789012");
+            escpos.close();
+            assertArrayEquals(barcode.getBytes("123456789012"), result.toByteArray());
+        }
+
+        // subclass customizing the commands on getBytes
+        QRCode custom = new QRCode() {
+            @Override
+            public byte[] getBytes(String data) {
+                byte[] bytes = super.getBytes(data);
+                byte[] customized = new byte[bytes.length + 1];
+                System.arraycopy(bytes, 0, customized, 0, bytes.length);
+                customized[bytes.length] = LF;
+                return customized;
+            }
+        };
+        ByteArrayOutputStream result = new ByteArrayOutputStream();
+        EscPos escpos = new EscPos(result);
+        escpos.write(custom, "hello");
+        escpos.close();
+        assertArrayEquals(custom.getBytes("hello"), result.toByteArray());
+        assertEquals(new QRCode().getBytes("hello").length + 1, result.size());
+    }
 
 }
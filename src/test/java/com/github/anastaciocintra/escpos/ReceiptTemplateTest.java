@@ -0,0 +1,81 @@
+package com.github.anastaciocintra.escpos;
+
+import com.github.anastaciocintra.escpos.barcode.BarCode;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.text.DecimalFormat;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ReceiptTemplateTest {
+
+    @Test
+    void renderTestCase() throws Exception{
+        Style title = new Style().setBold(true).setJustification(EscPosConst.Justification.Center);
+        BarCode barcode = new BarCode().setJustification(EscPosConst.Justification.Center);
+
+        ReceiptTemplate.Builder builder = new ReceiptTemplate.Builder();
+        builder.setCharacterCodeTable(EscPos.CharacterCodeTable.CP858_Euro);
+        builder.writeLF(title, "Café Coffee");
+        builder.writeField(new Style(), "customer");
+        builder.writeLF(" - total:");
+        builder.writeNumberField(new Style(), "total", "0.00");
+        builder.feed(1);
+        builder.writeBarCodeField(barcode, "order");
+        builder.cut(EscPos.CutMode.FULL);
+        ReceiptTemplate template = builder.build();
+
+        ByteArrayOutputStream expected = new ByteArrayOutputStream();
+        EscPos escpos = new EscPos(expected);
+        escpos.setCharacterCodeTable(EscPos.CharacterCodeTable.CP858_Euro);
+        escpos.writeLF(title, "Café Coffee");
+        escpos.write(new Style(), "João");
+        escpos.writeLF(" - total:");
+        escpos.write(new Style(), new DecimalFormat("0.00").format(12.5));
+        escpos.feed(1);
+        escpos.write(barcode, "123456");
+        escpos.cut(EscPos.CutMode.FULL);
+        escpos.close();
+
+        Map<String, Object> values = new HashMap<>();
+        values.put("customer", "João");
+        values.put("total", 12.5);
+        values.put("order", "123456");
+
+        assertEquals(3, template.getFieldNames().size());
+        assertArrayEquals(expected.toByteArray(), template.render(values));
+
+        ByteArrayOutputStream rendered = new ByteArrayOutputStream();
+        AtomicInteger writes = new AtomicInteger();
+        template.render(new FilterOutputStream(rendered) {
+            @Override
+            public void write(byte[] b, int off, int len) throws IOException {
+                writes.incrementAndGet();
+                out.write(b, off, len);
+            }
+        }, values);
+        assertArrayEquals(expected.toByteArray(), rendered.toByteArray());
+        assertEquals(1, writes.get());
+
+        ByteArrayOutputStream result = new ByteArrayOutputStream();
+        new EscPos(result, 16).write(template, values).close();
+        assertArrayEquals(expected.toByteArray(), result.toByteArray());
+
+        values.remove("total");
+        assertThrows(IllegalArgumentException.class, () -> template.render(values));
+
+        // the table of one field is chosen on recording
+        ReceiptTemplate.Builder autoBuilder = new ReceiptTemplate.Builder();
+        autoBuilder.setAutoCharacterCodeTable(EscPos.CharacterCodeTable.CP858_Euro, EscPos.CharacterCodeTable.CP737_Greek);
+        autoBuilder.writeLF("Café");
+        assertThrows(IllegalStateException.class, () -> autoBuilder.writeField(new Style(), "customer"));
+        assertThrows(IllegalStateException.class, () -> autoBuilder.writeNumberField(new Style(), "total", "0.00"));
+    }
+
+}
@@ -0,0 +1,68 @@
+package com.github.anastaciocintra.escpos.image;
+
+import org.junit.jupiter.api.Test;
+
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.util.Random;
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReader;
+import javax.imageio.stream.ImageInputStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class BandedEscPosImageTest {
+
+    private static BufferedImage randomImage(int width, int height) {
+        Random random = new Random(width * 31 + height);
+        BufferedImage image = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                image.setRGB(x, y, random.nextInt());
+            }
+        }
+        return image;
+    }
+
+    @Test
+    void oneBandTestCase() throws Exception{
+        CoffeeImage image = new CoffeeImageImpl(randomImage(45, 70));
+        for (RasterWrapperInterface wrapper : new RasterWrapperInterface[]{new RasterBitImageWrapper(), new GraphicsImageWrapper()}) {
+            ByteArrayOutputStream banded = new ByteArrayOutputStream();
+            new BandedEscPosImage(ImageRowSource.of(image), new BitonalOrderedDither()).writeTo(wrapper, banded);
+            assertArrayEquals(((ImageWrapperInterface) wrapper).getBytes(new EscPosImage(image, new BitonalOrderedDither())),
+                    banded.toByteArray());
+        }
+    }
+
+    @Test
+    void imageReaderTestCase() throws Exception{
+        BufferedImage bufferedImage = randomImage(50, 230);
+        ByteArrayOutputStream png = new ByteArrayOutputStream();
+        ImageIO.write(bufferedImage, "png", png);
+        byte[] expected = new EscPosImage(new CoffeeImageImpl(bufferedImage), new BitonalFloydSteinberg())
+                .getRasterBytes().toByteArray();
+
+        ByteArrayOutputStream banded = new ByteArrayOutputStream();
+        try (ImageInputStream input = ImageIO.createImageInputStream(new ByteArrayInputStream(png.toByteArray()))) {
+            ImageReader reader = ImageIO.getImageReaders(input).next();
+            reader.setInput(input);
+            ImageRowSource source = new ImageReaderRowSource(reader, 0).setBandHeight(40);
+            new BandedEscPosImage(source, new BitonalFloydSteinberg()).setBandHeight(100)
+                    .writeTo(new RasterBitImageWrapper(), banded);
+            reader.dispose();
+        }
+        // 3 bands: 100, 100 and 30 rows of 7 bytes, each one with header of 11 bytes
+        byte[] bytes = banded.toByteArray();
+        assertEquals(expected.length + 3 * 11, bytes.length);
+        ByteArrayOutputStream raster = new ByteArrayOutputStream();
+        int index = 0;
+        for (int rows : new int[]{100, 100, 30}) {
+            assertEquals(rows, bytes[index + 9] & 0xFF);
+            raster.write(bytes, index + 11, rows * 7);
+            index += 11 + rows * 7;
+        }
+        assertArrayEquals(expected, raster.toByteArray());
+    }
+}
@@ -0,0 +1,206 @@
+package com.github.anastaciocintra.escpos.image;
+
+import org.junit.jupiter.api.Test;
+
+import com.github.anastaciocintra.escpos.EscPos;
+import com.github.anastaciocintra.escpos.EscPosConst;
+
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class EscPosImageTest {
+
+    private static BufferedImage randomImage(int width, int height, int type) {
+        Random random = new Random(width * 31 + height);
+        BufferedImage image = new BufferedImage(width, height, type);
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                image.setRGB(x, y, random.nextInt());
+            }
+        }
+        return image;
+    }
+
+    /**
+     * conversion of each pixel, like before the conversion by rows.
+     */
+    private static EscPosImage pixelByPixel(CoffeeImage image, Bitonal bitonal) {
+        return new EscPosImage(image, bitonal) {
+            @Override
+            protected int getBitonalVal(int x, int y) {
+                return super.getBitonalVal(x, y);
+            }
+        };
+    }
+
+    private static void assertSameBytes(EscPosImage expected, EscPosImage actual) {
+        assertArrayEquals(expected.getRasterBytes().toByteArray(), actual.getRasterBytes().toByteArray());
+        for (int bits : new int[]{8, 24}) {
+            assertEquals(expected.getRasterRows(bits).size(), actual.getRasterRows(bits).size());
+            for (int i = 0; i < expected.getRasterRows(bits).size(); i++) {
+                assertArrayEquals(expected.getRasterRows(bits).get(i).toByteArray(),
+                        actual.getRasterRows(bits).get(i).toByteArray());
+            }
+        }
+    }
+
+    @Test
+    void bitonalRowTestCase() throws Exception{
+        for (int type : new int[]{BufferedImage.TYPE_INT_ARGB, BufferedImage.TYPE_INT_RGB, BufferedImage.TYPE_3BYTE_BGR}) {
+            BufferedImage bufferedImage = randomImage(61, 50, type);
+            for (CoffeeImage image : new CoffeeImage[]{new CoffeeImageImpl(bufferedImage),
+                    new CoffeeImageImpl(bufferedImage).getSubimage(3, 5, 41, 37)}) {
+                for (Bitonal bitonal : new Bitonal[]{new BitonalThreshold(), new BitonalOrderedDither(3, 2, 30, 200)}) {
+                    assertSameBytes(pixelByPixel(image, bitonal), new EscPosImage(image, bitonal));
+                }
+            }
+        }
+    }
+
+    @Test
+    void columnsTestCase() throws Exception{
+        BufferedImage bufferedImage = new BufferedImage(10, 16, BufferedImage.TYPE_INT_RGB);
+        for (int x = 0; x < 10; x++) {
+            for (int y = 0; y < 16; y++) {
+                bufferedImage.setRGB(x, y, x == y ? 0 : 0xFFFFFF);
+            }
+        }
+        EscPosImage image = new EscPosImage(new CoffeeImageImpl(bufferedImage), new BitonalThreshold());
+        assertEquals(2, image.getRasterRows(8).size());
+        byte[] columns = image.getRasterRows(8).get(0).toByteArray();
+        assertEquals(10, columns.length);
+        assertEquals((byte) 0x80, columns[0]);
+        assertEquals((byte) 0x01, columns[7]);
+        assertEquals((byte) 0x00, columns[8]);
+        assertEquals((byte) 0x80, image.getRasterRows(8).get(1).toByteArray()[8]);
+
+        // last row of 24 dots has 3 bytes for each column, even with 16 dots of height
+        assertEquals(1, image.getRasterRows(24).size());
+        columns = image.getRasterRows(24).get(0).toByteArray();
+        assertEquals(30, columns.length);
+        assertEquals((byte) 0x80, columns[0]);
+        assertEquals((byte) 0x00, columns[1]);
+        assertEquals((byte) 0x40, columns[9 * 3 + 1]);
+        assertEquals((byte) 0x00, columns[9 * 3 + 2]);
+    }
+
+    @Test
+    void parallelTestCase() throws Exception{
+        BufferedImage bufferedImage = randomImage(576, 1203, BufferedImage.TYPE_INT_RGB);
+        ForkJoinPool pool = new ForkJoinPool(4);
+        try {
+            for (Bitonal bitonal : new Bitonal[]{new BitonalThreshold(), new BitonalOrderedDither()}) {
+                EscPosImage serial = new EscPosImage(new CoffeeImageImpl(bufferedImage), bitonal);
+                EscPosImage parallel = new EscPosImage(new CoffeeImageImpl(bufferedImage), bitonal).setParallel(pool);
+                assertSameBytes(serial, parallel);
+            }
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    @Test
+    void errorDiffusionTestCase() throws Exception{
+        // 50% gray
+        BufferedImage bufferedImage = new BufferedImage(64, 600, BufferedImage.TYPE_INT_RGB);
+        for (int y = 0; y < 600; y++) {
+            for (int x = 0; x < 64; x++) {
+                bufferedImage.setRGB(x, y, 0x808080);
+            }
+        }
+        ForkJoinPool pool = new ForkJoinPool(4);
+        try {
+            for (Bitonal bitonal : new Bitonal[]{new BitonalFloydSteinberg(), new BitonalAtkinson()}) {
+                EscPosImage image = new EscPosImage(new CoffeeImageImpl(bufferedImage), bitonal).setParallel(pool);
+                int printed = 0;
+                for (byte b : image.getRasterBytes().toByteArray()) {
+                    printed += Integer.bitCount(b & 0xFF);
+                }
+                assertEquals(0.5, printed / (64.0 * 600.0), 0.02);
+                // same instance, new image starts with no error
+                assertArrayEquals(image.getRasterBytes().toByteArray(),
+                        new EscPosImage(new CoffeeImageImpl(bufferedImage), bitonal).getRasterBytes().toByteArray());
+            }
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+
+    @Test
+    void wrapperWriteToTestCase() throws Exception{
+        EscPosImage image = new EscPosImage(new CoffeeImageImpl(randomImage(83, 61, BufferedImage.TYPE_INT_RGB)),
+                new BitonalThreshold());
+        ImageWrapperInterface[] wrappers = {
+                new RasterBitImageWrapper().setJustification(EscPosConst.Justification.Center),
+                new BitImageWrapper().setMode(BitImageWrapper.BitImageMode._8DotDoubleDensity),
+                new BitImageWrapper().setJustification(EscPosConst.Justification.Right),
+                new GraphicsImageWrapper().setJustification(EscPosConst.Justification.Center)
+        };
+        for (ImageWrapperInterface wrapper : wrappers) {
+            ByteArrayOutputStream written = new ByteArrayOutputStream();
+            wrapper.writeTo(image, written);
+            assertArrayEquals(wrapper.getBytes(image), written.toByteArray());
+
+            ByteArrayOutputStream result = new ByteArrayOutputStream();
+            EscPos escpos = new EscPos(result);
+            escpos.write(wrapper, image);
+            escpos.close();
+            assertArrayEquals(wrapper.getBytes(image), result.toByteArray());
+        }
+
+        // subclass customizing the commands on getBytes
+        RasterBitImageWrapper custom = new RasterBitImageWrapper() {
+            @Override
+            public byte[] getBytes(EscPosImage image) {
+                return new byte[]{EscPosConst.ESC, 'J', 8};
+            }
+        };
+        ByteArrayOutputStream result = new ByteArrayOutputStream();
+        EscPos escpos = new EscPos(result);
+        escpos.write(custom, image);
+        escpos.close();
+        assertArrayEquals(new byte[]{EscPosConst.ESC, 'J', 8}, result.toByteArray());
+    }
+
+    @Test
+    void customRasterTestCase() throws Exception{
+        CoffeeImage coffeeImage = new CoffeeImageImpl(randomImage(83, 61, BufferedImage.TYPE_INT_RGB));
+        byte[] matrix = new EscPosImage(coffeeImage, new BitonalThreshold()).getBitonalMatrix();
+        byte[] inverted = new byte[matrix.length];
+        for (int i = 0; i < matrix.length; i++) {
+            inverted[i] = (byte) ~matrix[i];
+        }
+        // subclasses that customize the raster, before the packed matrix
+        EscPosImage customBytes = new EscPosImage(coffeeImage, new BitonalThreshold()) {
+            @Override
+            public ByteArrayOutputStream getRasterBytes() {
+                if (baCachedEscPosRaster.size() == 0) {
+                    baCachedEscPosRaster.write(inverted, 0, inverted.length);
+                }
+                return baCachedEscPosRaster;
+            }
+        };
+        EscPosImage customRaster = new EscPosImage(coffeeImage, new BitonalThreshold()) {
+            @Override
+            protected ByteArrayOutputStream image2EscPosRaster() {
+                ByteArrayOutputStream raster = new ByteArrayOutputStream();
+                raster.write(inverted, 0, inverted.length);
+                return raster;
+            }
+        };
+        RasterWrapperInterface[] wrappers = {new RasterBitImageWrapper(), new GraphicsImageWrapper()};
+        for (RasterWrapperInterface wrapper : wrappers) {
+            ByteArrayOutputStream expected = new ByteArrayOutputStream();
+            wrapper.writeRaster(inverted, 0, 83, 61, expected);
+            for (EscPosImage image : new EscPosImage[]{customBytes, customRaster}) {
+                assertEquals(inverted.length, image.getRasterSizeInBytes());
+                assertArrayEquals(expected.toByteArray(), ((ImageWrapperInterface) wrapper).getBytes(image));
+            }
+        }
+    }
+}
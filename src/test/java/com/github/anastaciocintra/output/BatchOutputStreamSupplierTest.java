@@ -0,0 +1,38 @@
+package com.github.anastaciocintra.output;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class BatchOutputStreamSupplierTest {
+
+    @Test
+    void batchTestCase() throws Exception{
+        List<ByteArrayOutputStream> documents = new ArrayList<>();
+        OutputStreamSupplier spooler = () -> {
+            ByteArrayOutputStream document = new ByteArrayOutputStream();
+            documents.add(document);
+            return document;
+        };
+        try (BatchOutputStreamSupplier batch = new BatchOutputStreamSupplier(spooler, 2, 50);
+             PrintJobExecutor jobExecutor = new PrintJobExecutor(Runnable::run)) {
+            CompletableFuture<Void> first = jobExecutor.submit(new byte[]{1}, batch);
+            assertFalse(first.isDone());
+            CompletableFuture<Void> second = jobExecutor.submit(new byte[]{2, 3}, batch);
+            // max jobs
+            first.get(1, TimeUnit.SECONDS);
+            second.get(1, TimeUnit.SECONDS);
+            // window
+            jobExecutor.submit(new byte[]{4}, batch).get(1, TimeUnit.SECONDS);
+        }
+        assertEquals(2, documents.size());
+        assertArrayEquals(new byte[]{1, 2, 3}, documents.get(0).toByteArray());
+        assertArrayEquals(new byte[]{4}, documents.get(1).toByteArray());
+    }
+}
@@ -0,0 +1,182 @@
+package com.github.anastaciocintra.output;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.net.ConnectException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class PrintDispatcherTest {
+
+    @Test
+    void priorityAndOverflowTestCase() throws Exception{
+        ByteArrayOutputStream printed = new ByteArrayOutputStream();
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        OutputStreamSupplier printer = () -> new OutputStream() {
+            @Override
+            public void write(int b) {
+                printed.write(b);
+            }
+
+            @Override
+            public void close() throws IOException {
+                started.countDown();
+                try {
+                    release.await();
+                } catch (InterruptedException ex) {
+                    throw new InterruptedIOException();
+                }
+            }
+        };
+
+        PrintDispatcher dispatcher = new PrintDispatcher(2, PrintDispatcher.OverflowPolicy.DROP_OLDEST);
+        dispatcher.addPrinter("kitchen", printer);
+        // first job keeps the worker busy
+        CompletableFuture<Void> first = dispatcher.submit("kitchen", new byte[]{1});
+        assertTrue(started.await(10, TimeUnit.SECONDS));
+
+        CompletableFuture<Void> reprint = dispatcher.submit("kitchen", new byte[]{2}, PrintDispatcher.Priority.LOW);
+        CompletableFuture<Void> normal = dispatcher.submit("kitchen", new byte[]{3});
+        assertEquals(2, dispatcher.getQueueDepth("kitchen"));
+        // queue is full, the reprint is dropped
+        CompletableFuture<Void> ticket = dispatcher.submit("kitchen", new byte[]{4}, PrintDispatcher.Priority.HIGH);
+        ExecutionException ex = assertThrows(ExecutionException.class, () -> reprint.get(10, TimeUnit.SECONDS));
+        assertTrue(ex.getCause() instanceof RejectedExecutionException);
+        // no job with the same or lower priority to drop
+        CompletableFuture<Void> late = dispatcher.submit("kitchen", new byte[]{5}, PrintDispatcher.Priority.LOW);
+        assertTrue(late.isCompletedExceptionally());
+
+        release.countDown();
+        CompletableFuture.allOf(first, normal, ticket).get(10, TimeUnit.SECONDS);
+        assertArrayEquals(new byte[]{1, 4, 3}, printed.toByteArray());
+        assertEquals(0, dispatcher.getQueueDepth("kitchen"));
+        dispatcher.close();
+        assertTrue(dispatcher.submit("kitchen", new byte[]{6}).isCompletedExceptionally());
+    }
+
+    @Test
+    void coalescingTestCase() throws Exception{
+        ByteArrayOutputStream printed = new ByteArrayOutputStream();
+        AtomicInteger opened = new AtomicInteger();
+        CountDownLatch release = new CountDownLatch(1);
+        OutputStreamSupplier printer = () -> {
+            opened.incrementAndGet();
+            return new OutputStream() {
+                @Override
+                public void write(int b) {
+                    printed.write(b);
+                }
+
+                @Override
+                public void close() throws IOException {
+                    try {
+                        release.await();
+                    } catch (InterruptedException ex) {
+                        throw new InterruptedIOException();
+                    }
+                }
+            };
+        };
+        PrintDispatcher dispatcher = new PrintDispatcher(100, PrintDispatcher.OverflowPolicy.BLOCK)
+                .setCoalescing(4, 0);
+        dispatcher.addPrinter("bar", printer);
+        CompletableFuture<?>[] jobs = new CompletableFuture<?>[6];
+        jobs[0] = dispatcher.submit("bar", new byte[]{0, 0, 0});
+        while (dispatcher.getQueueDepth("bar") > 0) {
+            Thread.sleep(1);
+        }
+        for (int i = 1; i < jobs.length; i++) {
+            jobs[i] = dispatcher.submit("bar", new byte[]{(byte) i, (byte) i});
+        }
+        release.countDown();
+        CompletableFuture.allOf(jobs).get(10, TimeUnit.SECONDS);
+        // first job alone, then pairs of jobs up to 4 bytes
+        assertEquals(4, opened.get());
+        assertArrayEquals(new byte[]{0, 0, 0, 1, 1, 2, 2, 3, 3, 4, 4, 5, 5}, printed.toByteArray());
+        dispatcher.close();
+    }
+
+    @Test
+    void coalescingRetryTestCase() throws Exception{
+        List<String> streams = Collections.synchronizedList(new ArrayList<>());
+        CountDownLatch release = new CountDownLatch(1);
+        OutputStreamSupplier printer = () -> {
+            int index = streams.size();
+            streams.add("");
+            return new ByteArrayOutputStream() {
+                @Override
+                public void close() throws IOException {
+                    streams.set(index, Arrays.toString(toByteArray()));
+                    if (index == 0) {
+                        try {
+                            release.await();
+                        } catch (InterruptedException ex) {
+                            throw new InterruptedIOException();
+                        }
+                    }
+                    // the batch and the first retry fail after the printer got the bytes
+                    if (index == 1 || index == 2) {
+                        throw new IOException("Connection reset");
+                    }
+                }
+            };
+        };
+        PrintDispatcher dispatcher = new PrintDispatcher(100, PrintDispatcher.OverflowPolicy.BLOCK)
+                .setCoalescing(100, 0)
+                .setReconnect(3, 1, 10);
+        dispatcher.addPrinter("bar", printer);
+        CompletableFuture<?>[] jobs = new CompletableFuture<?>[4];
+        jobs[0] = dispatcher.submit("bar", new byte[]{0});
+        while (dispatcher.getQueueDepth("bar") > 0) {
+            Thread.sleep(1);
+        }
+        for (int i = 1; i < jobs.length; i++) {
+            jobs[i] = dispatcher.submit("bar", new byte[]{(byte) i});
+        }
+        release.countDown();
+        CompletableFuture.allOf(jobs).get(10, TimeUnit.SECONDS);
+        // after the failed batch, one job by stream
+        assertEquals(Arrays.asList("[0]", "[1, 2, 3]", "[1]", "[1]", "[2]", "[3]"), streams);
+        dispatcher.close();
+    }
+
+    @Test
+    void reconnectTestCase() throws Exception{
+        ByteArrayOutputStream printed = new ByteArrayOutputStream();
+        AtomicInteger attempts = new AtomicInteger();
+        OutputStreamSupplier rebooting = () -> {
+            if (attempts.incrementAndGet() < 3) {
+                throw new ConnectException("Connection refused");
+            }
+            return printed;
+        };
+        PrintDispatcher dispatcher = new PrintDispatcher(10, PrintDispatcher.OverflowPolicy.REJECT)
+                .setReconnect(5, 1, 10);
+        dispatcher.addPrinter("kitchen", rebooting);
+        dispatcher.submit("kitchen", new byte[]{1, 2}).get(10, TimeUnit.SECONDS);
+        assertEquals(3, attempts.get());
+        assertArrayEquals(new byte[]{1, 2}, printed.toByteArray());
+
+        // attempts exhausted
+        attempts.set(-10);
+        ExecutionException ex = assertThrows(ExecutionException.class,
+                () -> dispatcher.submit("kitchen", new byte[]{3}).get(10, TimeUnit.SECONDS));
+        assertTrue(ex.getCause() instanceof ConnectException);
+        dispatcher.close();
+    }
+}
@@ -0,0 +1,39 @@
+package com.github.anastaciocintra.output;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class PrintJobExecutorTest {
+
+    @Test
+    void deliveryTestCase() throws Exception{
+        try (ServerSocket server = new ServerSocket(0); PrintJobExecutor jobExecutor = new PrintJobExecutor()) {
+            int port = server.getLocalPort();
+            CompletableFuture<Void> delivered = jobExecutor.submit(new byte[]{1, 2, 3},
+                    () -> new TcpIpOutputStream("localhost", port));
+            try (Socket socket = server.accept()) {
+                InputStream in = socket.getInputStream();
+                assertEquals(1, in.read());
+                assertEquals(2, in.read());
+                assertEquals(3, in.read());
+                assertEquals(-1, in.read());
+            }
+            delivered.get(10, TimeUnit.SECONDS);
+
+            server.close();
+            CompletableFuture<Void> failed = jobExecutor.submit(new byte[]{1},
+                    () -> new TcpIpOutputStream("localhost", port));
+            ExecutionException ex = assertThrows(ExecutionException.class, () -> failed.get(10, TimeUnit.SECONDS));
+            assertTrue(ex.getCause() instanceof IOException);
+        }
+    }
+}
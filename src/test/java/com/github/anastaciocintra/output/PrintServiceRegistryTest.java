@@ -0,0 +1,52 @@
+package com.github.anastaciocintra.output;
+
+import org.junit.jupiter.api.Test;
+
+import java.lang.reflect.Proxy;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import javax.print.PrintService;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class PrintServiceRegistryTest {
+
+    private static PrintService printService(String name) {
+        return (PrintService) Proxy.newProxyInstance(PrintService.class.getClassLoader(),
+                new Class<?>[]{PrintService.class},
+                (proxy, method, args) -> "getName".equals(method.getName()) ? name : null);
+    }
+
+    @Test
+    void lookupTestCase() throws Exception{
+        PrintService kitchen = printService("Kitchen TM-T20");
+        PrintService bar = printService("bar");
+        PrintService barUpper = printService("BAR");
+        AtomicReference<PrintService[]> services = new AtomicReference<>(new PrintService[]{kitchen, barUpper, bar});
+        AtomicInteger lookups = new AtomicInteger();
+        PrintServiceRegistry registry = new PrintServiceRegistry(() -> {
+            lookups.incrementAndGet();
+            return services.get();
+        });
+
+        // exact, then ignore case, then contains
+        assertSame(bar, registry.getPrintServiceByName("bar"));
+        assertSame(barUpper, registry.getPrintServiceByName("Bar"));
+        assertSame(kitchen, registry.getPrintServiceByName("tm-t20"));
+        assertSame(kitchen, registry.getPrintServiceByName("tm-t20"));
+        assertArrayEquals(new String[]{"Kitchen TM-T20", "BAR", "bar"}, registry.getPrintServicesNames());
+        assertEquals(1, lookups.get());
+
+        // new printer is found after refresh
+        PrintService office = printService("office");
+        services.set(new PrintService[]{kitchen, office});
+        assertThrows(IllegalArgumentException.class, () -> registry.getPrintServiceByName("office"));
+        registry.refresh();
+        assertSame(office, registry.getPrintServiceByName("office"));
+
+        registry.setRefreshInterval(0);
+        registry.getPrintServiceByName("office");
+        registry.getPrintServiceByName("office");
+        assertEquals(4, lookups.get());
+    }
+}
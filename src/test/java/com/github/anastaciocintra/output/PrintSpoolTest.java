@@ -0,0 +1,210 @@
+package com.github.anastaciocintra.output;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.net.ConnectException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class PrintSpoolTest {
+
+    @Test
+    void replayAndCompactionTestCase() throws Exception{
+        Path directory = Files.createTempDirectory("spool");
+        try {
+            PrintSpool spool = new PrintSpool(directory, 1024);
+            long first = 0;
+            for (int i = 0; i < 20; i++) {
+                long sequence = spool.append(i % 2 == 0 ? "kitchen" : "bar", new byte[]{(byte) i, 1, 2, 3});
+                if (i == 0) {
+                    first = sequence;
+                } else if (i != 15) {
+                    spool.acknowledge(sequence);
+                }
+            }
+            spool.append("kitchen", new byte[600]);
+            spool.close();
+
+            // restart
+            spool = new PrintSpool(directory, 1024);
+            List<PrintSpool.SpooledJob> jobs = spool.getPendingJobs();
+            assertEquals(3, jobs.size());
+            assertEquals(first, jobs.get(0).getSequence());
+            assertEquals("kitchen", jobs.get(0).getPrinterName());
+            assertArrayEquals(new byte[]{0, 1, 2, 3}, jobs.get(0).getData());
+            assertEquals("bar", jobs.get(1).getPrinterName());
+            assertArrayEquals(new byte[]{15, 1, 2, 3}, jobs.get(1).getData());
+            assertEquals(600, jobs.get(2).getData().length);
+
+            // dispatcher delivers and acknowledges the pending jobs
+            ByteArrayOutputStreamSupplier printed = new ByteArrayOutputStreamSupplier();
+            PrintDispatcher dispatcher = new PrintDispatcher(10, PrintDispatcher.OverflowPolicy.BLOCK)
+                    .setSpool(spool);
+            dispatcher.addPrinter("kitchen", printed).addPrinter("bar", printed);
+            CompletableFuture.allOf(dispatcher.replaySpool().toArray(new CompletableFuture<?>[0])).get(10, TimeUnit.SECONDS);
+            dispatcher.submit("bar", new byte[]{9}).get(10, TimeUnit.SECONDS);
+            dispatcher.close();
+            assertEquals(4 + 4 + 600 + 1, printed.size());
+            assertEquals(0, spool.getPendingCount());
+            try (Stream<Path> files = Files.list(directory)) {
+                assertEquals(1, files.count());
+            }
+            spool.close();
+        } finally {
+            deleteDirectory(directory);
+        }
+    }
+
+    @Test
+    void tornTailTestCase() throws Exception{
+        Path directory = Files.createTempDirectory("spool");
+        try {
+            PrintSpool spool = new PrintSpool(directory, 1024);
+            for (int i = 0; i < 3; i++) {
+                spool.append("kitchen", new byte[]{(byte) i, 1, 2, 3});
+            }
+            spool.close();
+
+            // crash while writing: last record (30 bytes at 60) torn, garbage after it
+            Path segment;
+            try (Stream<Path> files = Files.list(directory)) {
+                segment = files.findFirst().get();
+            }
+            try (FileChannel channel = FileChannel.open(segment, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+                channel.write(ByteBuffer.wrap(new byte[]{(byte) 0x55}), 60 + 29);
+                channel.write(ByteBuffer.allocate(8).putInt(0, 40).putInt(4, 1234), 90);
+            }
+
+            spool = new PrintSpool(directory, 1024);
+            List<PrintSpool.SpooledJob> jobs = spool.getPendingJobs();
+            assertEquals(2, jobs.size());
+            assertArrayEquals(new byte[]{1, 1, 2, 3}, jobs.get(1).getData());
+            // new records go after the last valid one and are recovered
+            long sequence = spool.append("bar", new byte[]{7});
+            spool.close();
+
+            spool = new PrintSpool(directory, 1024);
+            jobs = spool.getPendingJobs();
+            assertEquals(3, jobs.size());
+            assertEquals(sequence, jobs.get(2).getSequence());
+            assertArrayEquals(new byte[]{7}, jobs.get(2).getData());
+            spool.close();
+        } finally {
+            deleteDirectory(directory);
+        }
+    }
+
+    @Test
+    void failedDeliveryTestCase() throws Exception{
+        Path directory = Files.createTempDirectory("spool");
+        try {
+            PrintSpool spool = new PrintSpool(directory, 1024);
+            ByteArrayOutputStreamSupplier printed = new ByteArrayOutputStreamSupplier();
+            AtomicBoolean printerDown = new AtomicBoolean(true);
+            PrintDispatcher dispatcher = new PrintDispatcher(10, PrintDispatcher.OverflowPolicy.BLOCK)
+                    .setSpool(spool);
+            dispatcher.addPrinter("kitchen", () -> {
+                if (printerDown.get()) {
+                    throw new ConnectException("Connection refused");
+                }
+                return printed.open();
+            });
+            CompletableFuture<Void> failed = dispatcher.submit("kitchen", new byte[100]);
+            assertThrows(ExecutionException.class, () -> failed.get(10, TimeUnit.SECONDS));
+            printerDown.set(false);
+            // enough jobs to fill several segments
+            for (int i = 0; i < 30; i++) {
+                dispatcher.submit("kitchen", new byte[100]).get(10, TimeUnit.SECONDS);
+            }
+            dispatcher.close();
+            assertEquals(0, spool.getPendingCount());
+            try (Stream<Path> files = Files.list(directory)) {
+                assertEquals(1, files.count());
+            }
+            spool.close();
+        } finally {
+            deleteDirectory(directory);
+        }
+    }
+
+    @Test
+    void interruptedSubmitTestCase() throws Exception{
+        Path directory = Files.createTempDirectory("spool");
+        try {
+            PrintSpool spool = new PrintSpool(directory, 1024);
+            CountDownLatch started = new CountDownLatch(1);
+            CountDownLatch release = new CountDownLatch(1);
+            PrintDispatcher dispatcher = new PrintDispatcher(1, PrintDispatcher.OverflowPolicy.BLOCK)
+                    .setSpool(spool);
+            dispatcher.addPrinter("kitchen", () -> new ByteArrayOutputStream() {
+                @Override
+                public void close() throws IOException {
+                    started.countDown();
+                    try {
+                        release.await();
+                    } catch (InterruptedException ex) {
+                        throw new InterruptedIOException();
+                    }
+                }
+            });
+            // one job on the printer, one on the full queue
+            CompletableFuture<Void> first = dispatcher.submit("kitchen", new byte[]{1});
+            assertTrue(started.await(10, TimeUnit.SECONDS));
+            CompletableFuture<Void> second = dispatcher.submit("kitchen", new byte[]{2});
+
+            // the caller is interrupted while waiting for room
+            Thread.currentThread().interrupt();
+            CompletableFuture<Void> interrupted = dispatcher.submit("kitchen", new byte[]{3});
+            assertTrue(Thread.interrupted());
+            ExecutionException ex = assertThrows(ExecutionException.class, () -> interrupted.get(10, TimeUnit.SECONDS));
+            assertTrue(ex.getCause() instanceof InterruptedException);
+            assertEquals(2, spool.getPendingCount());
+
+            release.countDown();
+            CompletableFuture.allOf(first, second).get(10, TimeUnit.SECONDS);
+            dispatcher.close();
+            // nothing to replay
+            assertEquals(0, spool.getPendingCount());
+            spool.close();
+        } finally {
+            deleteDirectory(directory);
+        }
+    }
+
+    private static void deleteDirectory(Path directory) throws IOException {
+        try (Stream<Path> files = Files.list(directory)) {
+            files.map(Path::toFile).forEach(File::delete);
+        }
+        Files.delete(directory);
+    }
+
+    private static class ByteArrayOutputStreamSupplier implements OutputStreamSupplier {
+        private final ByteArrayOutputStream printed = new ByteArrayOutputStream();
+
+        @Override
+        public OutputStream open() {
+            return printed;
+        }
+
+        synchronized int size() {
+            return printed.size();
+        }
+    }
+}
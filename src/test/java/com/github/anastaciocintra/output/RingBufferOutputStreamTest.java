@@ -0,0 +1,70 @@
+package com.github.anastaciocintra.output;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.InputStream;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class RingBufferOutputStreamTest {
+
+    @Test
+    void transferTestCase() throws Exception{
+        byte[] data = new byte[100_000];
+        for (int i = 0; i < data.length; i++) {
+            data[i] = (byte) (i * 31);
+        }
+        RingBufferOutputStream ring = new RingBufferOutputStream(100);
+        assertEquals(128, ring.getCapacity());
+
+        ByteArrayOutputStream received = new ByteArrayOutputStream();
+        AtomicReference<Exception> error = new AtomicReference<>();
+        Thread reader = new Thread(() -> {
+            try {
+                InputStream in = ring.getInputStream();
+                byte[] buf = new byte[50];
+                received.write(in.read());
+                int n;
+                while ((n = in.read(buf)) >= 0) {
+                    received.write(buf, 0, n);
+                }
+            } catch (IOException ex) {
+                error.set(ex);
+            }
+        });
+        reader.start();
+
+        ring.write(data, 0, 1000);
+        ring.write(data[1000]);
+        ring.write(data, 1001, data.length - 1001);
+        ring.close();
+        reader.join(10_000);
+
+        assertNull(error.get());
+        assertArrayEquals(data, received.toByteArray());
+    }
+
+    @Test
+    void errorPropagationTestCase() throws Exception{
+        RingBufferOutputStream ring = new RingBufferOutputStream(16);
+        Thread reader = new Thread(() -> ring.getInputStream().abort(new IOException("printer offline")));
+        ring.write(new byte[16]);
+        reader.start();
+        // ring is full, the writer waits until the reader fails
+        IOException ex = assertThrows(IOException.class, () -> ring.write(1));
+        assertEquals("printer offline", ex.getCause().getMessage());
+
+        RingBufferOutputStream aborted = new RingBufferOutputStream(16);
+        aborted.write(1);
+        aborted.abort(new IllegalStateException("canceled"));
+        assertThrows(IOException.class, () -> aborted.getInputStream().read());
+
+        RingBufferOutputStream timeout = new RingBufferOutputStream(16).setWriteTimeout(10);
+        timeout.write(new byte[16]);
+        assertThrows(InterruptedIOException.class, () -> timeout.write(1));
+    }
+}
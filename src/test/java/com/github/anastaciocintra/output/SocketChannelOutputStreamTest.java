@@ -0,0 +1,94 @@
+package com.github.anastaciocintra.output;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketTimeoutException;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SocketChannelOutputStreamTest {
+
+    @Test
+    void sendJobTestCase() throws Exception{
+        byte[] data = new byte[200_000];
+        for (int i = 0; i < data.length; i++) {
+            data[i] = (byte) i;
+        }
+        try (ServerSocket server = new ServerSocket(0)) {
+            TcpIpSettings settings = new TcpIpSettings().setJobBufferSize(100_000);
+            SocketChannelOutputStream outputStream = new SocketChannelOutputStream("localhost", server.getLocalPort(), settings);
+            ByteArrayOutputStream received = new ByteArrayOutputStream();
+            try (Socket socket = server.accept()) {
+                outputStream.write(data[0]);
+                outputStream.write(data, 1, data.length - 1);
+                outputStream.close();
+                InputStream in = socket.getInputStream();
+                byte[] buf = new byte[8192];
+                int n;
+                while ((n = in.read(buf)) >= 0) {
+                    received.write(buf, 0, n);
+                }
+            }
+            assertArrayEquals(data, received.toByteArray());
+        }
+    }
+
+    @Test
+    void writeTimeoutTestCase() throws Exception{
+        try (ServerSocket server = new ServerSocket(0)) {
+            TcpIpSettings settings = new TcpIpSettings()
+                    .setWriteTimeout(100)
+                    .setSendBufferSize(4096);
+            SocketChannelOutputStream outputStream = new SocketChannelOutputStream("localhost", server.getLocalPort(), settings);
+            try (Socket socket = server.accept()) {
+                // the printer never reads
+                byte[] data = new byte[16 * 1024 * 1024];
+                long start = System.nanoTime();
+                assertThrows(SocketTimeoutException.class, () -> outputStream.write(data));
+                assertTrue(System.nanoTime() - start < 5_000_000_000L);
+            }
+        }
+    }
+
+    @Test
+    void idleTimeoutTestCase() throws Exception{
+        try (ServerSocket server = new ServerSocket(0)) {
+            // wide margin, the steps between the waits must not reach the idle timeout
+            TcpIpSettings settings = new TcpIpSettings().setIdleTimeout(500);
+            SocketChannelOutputStream outputStream = new SocketChannelOutputStream("localhost", server.getLocalPort(), settings);
+            try (Socket dropped = server.accept()) {
+                // before the first bytes of the job, the connection is reopened
+                waitIdleExpired(outputStream);
+                outputStream.write(new byte[]{1, 2});
+                outputStream.flush();
+                try (Socket socket = server.accept()) {
+                    // in the middle of the job, the job fails
+                    waitIdleExpired(outputStream);
+                    outputStream.write(3);
+                    assertThrows(IOException.class, outputStream::flush);
+                    outputStream.close();
+                    assertTrue(outputStream.getDelivery().isCompletedExceptionally());
+
+                    InputStream in = socket.getInputStream();
+                    assertEquals(1, in.read());
+                    assertEquals(2, in.read());
+                    assertEquals(-1, in.read());
+                }
+                assertEquals(-1, dropped.getInputStream().read());
+            }
+        }
+    }
+
+    private static void waitIdleExpired(SocketChannelOutputStream outputStream) throws InterruptedException {
+        long deadline = System.nanoTime() + 10_000_000_000L;
+        while (!outputStream.connection.isIdleExpired()) {
+            assertTrue(System.nanoTime() < deadline);
+            Thread.sleep(10);
+        }
+    }
+}
@@ -0,0 +1,51 @@
+package com.github.anastaciocintra.output;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.InputStream;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketTimeoutException;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TcpIpConnectionPoolTest {
+
+    @Test
+    void poolReuseTestCase() throws Exception{
+        try (ServerSocket server = new ServerSocket(0); TcpIpConnectionPool pool = new TcpIpConnectionPool()) {
+            int port = server.getLocalPort();
+            SocketChannelOutputStream job1 = pool.getOutputStream("localhost", port);
+            try (Socket socket = server.accept()) {
+                job1.write(new byte[]{1, 2, 3});
+                job1.close();
+                assertEquals(1, pool.getIdleCount());
+
+                // same connection, accepted only once
+                SocketChannelOutputStream job2 = pool.getOutputStream("localhost", port);
+                assertEquals(0, pool.getIdleCount());
+
+                // the printer is used by job2
+                pool.setAcquireTimeout(100);
+                assertThrows(SocketTimeoutException.class, () -> pool.getOutputStream("localhost", port));
+                job2.write(new byte[]{4, 5});
+                job2.close();
+
+                InputStream in = socket.getInputStream();
+                byte[] received = new byte[5];
+                int len = 0;
+                while (len < received.length) {
+                    len += in.read(received, len, received.length - len);
+                }
+                assertArrayEquals(new byte[]{1, 2, 3, 4, 5}, received);
+
+                pool.setMaxIdleTime(0);
+                pool.evictIdleConnections();
+                assertEquals(0, pool.getIdleCount());
+                assertEquals(-1, in.read());
+                // printers not used are removed
+                assertTrue(pool.entries.isEmpty());
+            }
+        }
+    }
+}
@@ -0,0 +1,109 @@
+package com.github.anastaciocintra.output;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TcpIpEventLoopTest {
+
+    @Test
+    void manyPrintersTestCase() throws Exception{
+        try (ServerSocket printer1 = new ServerSocket(0);
+             ServerSocket printer2 = new ServerSocket(0);
+             TcpIpEventLoop eventLoop = new TcpIpEventLoop(1)) {
+            byte[] big = new byte[3_000_000];
+            for (int i = 0; i < big.length; i++) {
+                big[i] = (byte) i;
+            }
+            CompletableFuture<Void> job1 = eventLoop.submit("localhost", printer1.getLocalPort(), big);
+            TcpIpEventLoop.JobOutputStream job2 = eventLoop.getOutputStream("localhost", printer2.getLocalPort());
+            job2.write(new byte[]{1, 2, 3});
+            job2.close();
+            CompletableFuture<Void> job3 = eventLoop.submit("localhost", printer1.getLocalPort(), new byte[]{4, 5});
+
+            try (Socket socket1 = printer1.accept(); Socket socket2 = printer2.accept()) {
+                assertArrayEquals(new byte[]{1, 2, 3}, readFully(socket2.getInputStream(), 3));
+                job2.getDelivery().get(10, TimeUnit.SECONDS);
+
+                ByteArrayOutputStream expected = new ByteArrayOutputStream();
+                expected.write(big);
+                expected.write(new byte[]{4, 5});
+                assertArrayEquals(expected.toByteArray(), readFully(socket1.getInputStream(), big.length + 2));
+                job1.get(10, TimeUnit.SECONDS);
+                job3.get(10, TimeUnit.SECONDS);
+            }
+        }
+    }
+
+    @Test
+    void connectionRefusedTestCase() throws Exception{
+        int port;
+        try (ServerSocket closed = new ServerSocket(0)) {
+            port = closed.getLocalPort();
+        }
+        try (TcpIpEventLoop eventLoop = new TcpIpEventLoop(1)) {
+            CompletableFuture<Void> job = eventLoop.submit("localhost", port, new byte[]{1});
+            ExecutionException ex = assertThrows(ExecutionException.class, () -> job.get(10, TimeUnit.SECONDS));
+            assertTrue(ex.getCause() instanceof IOException);
+        }
+    }
+
+    @Test
+    void completionExecutorTestCase() throws Exception{
+        ExecutorService completion = Executors.newSingleThreadExecutor(runnable -> new Thread(runnable, "completion"));
+        try (ServerSocket printer = new ServerSocket(0);
+             TcpIpEventLoop eventLoop = new TcpIpEventLoop(1, new TcpIpSettings(), completion)) {
+            CompletableFuture<Void> job = eventLoop.submit("localhost", printer.getLocalPort(), new byte[]{1});
+            // callbacks never run on the loop thread
+            CompletableFuture<String> callbackThread = job.thenApply(result -> Thread.currentThread().getName());
+            try (Socket socket = printer.accept()) {
+                assertFalse(callbackThread.get(10, TimeUnit.SECONDS).startsWith("TcpIpEventLoop"));
+            }
+        } finally {
+            completion.shutdown();
+        }
+    }
+
+    @Test
+    void backpressureTestCase() throws Exception{
+        try (ServerSocket printer = new ServerSocket(0);
+             TcpIpEventLoop eventLoop = new TcpIpEventLoop(1).setMaxPendingJobs(1)) {
+            // printer doesn't read, the job stays pending
+            CompletableFuture<Void> big = eventLoop.submit("localhost", printer.getLocalPort(), new byte[50_000_000]);
+            CompletableFuture<Void> rejected = eventLoop.submit("localhost", printer.getLocalPort(), new byte[]{1});
+            ExecutionException ex = assertThrows(ExecutionException.class, () -> rejected.get(10, TimeUnit.SECONDS));
+            assertTrue(ex.getCause() instanceof RejectedExecutionException);
+            assertEquals(1, eventLoop.getPendingJobs());
+
+            TcpIpEventLoop.JobOutputStream job = eventLoop.getOutputStream("localhost", printer.getLocalPort());
+            job.write(1);
+            job.close();
+            assertThrows(UncheckedIOException.class, () -> job.write(2));
+            assertFalse(big.isDone());
+        }
+    }
+
+    private static byte[] readFully(InputStream in, int len) throws IOException {
+        byte[] data = new byte[len];
+        int pos = 0;
+        while (pos < len) {
+            int n = in.read(data, pos, len - pos);
+            assertTrue(n > 0);
+            pos += n;
+        }
+        return data;
+    }
+}
@@ -0,0 +1,55 @@
+package com.github.anastaciocintra.output;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TcpIpOutputStreamTest {
+
+    @Test
+    void executorTestCase() throws Exception{
+        ExecutorService executor = Executors.newCachedThreadPool();
+        try (ServerSocket server = new ServerSocket(0)) {
+            TcpIpOutputStream outputStream = new TcpIpOutputStream("localhost", server.getLocalPort(), 1024, executor);
+            assertNull(outputStream.threadPrint);
+            try (Socket socket = server.accept()) {
+                outputStream.write(new byte[]{1, 2, 3});
+                outputStream.close();
+                InputStream in = socket.getInputStream();
+                assertEquals(1, in.read());
+                assertEquals(2, in.read());
+                assertEquals(3, in.read());
+                assertEquals(-1, in.read());
+            }
+
+            // printer offline: error goes to the handler and to the writer
+            int port = server.getLocalPort();
+            server.close();
+            AtomicReference<Throwable> error = new AtomicReference<>();
+            AtomicReference<Runnable> task = new AtomicReference<>();
+            TcpIpOutputStream offline = new TcpIpOutputStream("localhost", port, 16, task::set);
+            offline.setUncaughtException((t, e) -> error.set(e));
+            Thread thread = PrintThreads.virtualThreadFactory().newThread(task.get());
+            thread.start();
+            assertThrows(IOException.class, () -> {
+                for (int i = 0; i < 100; i++) {
+                    offline.write(new byte[16]);
+                }
+            });
+            thread.join(10_000);
+            assertNotNull(error.get());
+        } finally {
+            executor.shutdown();
+            executor.awaitTermination(10, TimeUnit.SECONDS);
+        }
+    }
+}